@@ -27,18 +27,20 @@ package com.jcandleplay.graph;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.image.BufferedImage;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JPanel;
 
 import com.jcandleplay.graph.data.Candle;
-import com.jcandleplay.graph.utils.GraphDateUtils;
+import com.jcandleplay.graph.data.CandleFrame;
+import com.jcandleplay.graph.data.ReplayScheduler;
+import com.jcandleplay.graph.utils.LabelFormatter;
 
 /**
  * This class represents the Graph of candlestick
@@ -77,16 +79,24 @@ public class GraphPanel extends JPanel {
 	 * A  light blue color
 	 */
 	private final static Color lightBlueColor = new Color(230, 230, 250);
-	
+
+	/**
+	 * The color of the volume bars
+	 */
+	private final static Color volumeColor = new Color(60, 60, 100);
+
 	/**
-	 * The lock for rendering loop
+	 * The colors of the lines of the indicators, in turn
 	 */
-	private final Object redrawLock = new Object();
+	private final static Color[] indicatorColors = {
+		Color.ORANGE, Color.CYAN, Color.MAGENTA, Color.YELLOW, Color.PINK, Color.WHITE
+	};
 	
 	/**
-	 * The current list of candles to draw
+	 * The current frame to draw, the candles with their scale
+	 * It is replaced whole, so painting always reads candles and scale of the same frame
 	 */
-	private Collection<Candle> candleList;
+	private volatile CandleFrame candleFrame = CandleFrame.EMPTY;
 	
 	/**
 	 * The x offset in percentage 
@@ -140,6 +150,105 @@ public class GraphPanel extends JPanel {
 	 */
 	private int mouseY;
 
+	/**
+	 * The width of the date box of the crosshair
+	 */
+	private final int crosshairDateBoxWidth = 120;
+
+	/**
+	 * The part of the height of the graph taken by the pane of the volume bars, at its bottom, below the prices
+	 */
+	private final double volumePaneHeightPerc = 0.2;
+
+	/**
+	 * The formatter of the labels, used only by the painting thread
+	 */
+	private final LabelFormatter labelFormatter = new LabelFormatter();
+
+	/**
+	 * The reusable chars of the label being drawn
+	 */
+	private final char[] labelChars = new char[32];
+
+	/**
+	 * The offscreen layer with the background, the axes and the closed candles
+	 * Only the open candle and the cross lines are drawn on top of it each frame
+	 */
+	private BufferedImage closedCandleLayer;
+
+	/**
+	 * The first closed candle drawn on {@link GraphPanel#closedCandleLayer}
+	 */
+	private Candle layerFirstCandle;
+
+	/**
+	 * The last closed candle drawn on {@link GraphPanel#closedCandleLayer}
+	 */
+	private Candle layerLastCandle;
+
+	/**
+	 * The number of candles of the list drawn on {@link GraphPanel#closedCandleLayer}
+	 */
+	private int layerCandleCount;
+
+	/**
+	 * The minimum value of the scale of {@link GraphPanel#closedCandleLayer}
+	 */
+	private double layerMinValue;
+
+	/**
+	 * The maximum value of the scale of {@link GraphPanel#closedCandleLayer}
+	 */
+	private double layerMaxValue;
+
+	/**
+	 * The x offset, y offset and vertical padding of {@link GraphPanel#closedCandleLayer}
+	 */
+	private double layerXOffsetPerc, layerYOffsetPerc, layerVerticalPadding;
+
+	/**
+	 * The limit of the time line boxes after the closed candles of {@link GraphPanel#closedCandleLayer}
+	 */
+	private int layerLastBoxLimit;
+
+	/**
+	 * The values of the lines of the indicators at the last closed candle of {@link GraphPanel#closedCandleLayer}
+	 */
+	private double[] layerIndicatorValues = new double[0];
+
+	/**
+	 * The highest volume of a candle, the scale of the volume bars of {@link GraphPanel#closedCandleLayer}
+	 */
+	private double layerMaxVolume;
+
+	/**
+	 * The scheduler of the repaints, null if the render loop is not running
+	 */
+	private volatile ReplayScheduler renderScheduler;
+
+	/**
+	 * If a repaint is already scheduled, so many changes within a frame cause a single repaint
+	 */
+	private final AtomicBoolean repaintScheduled = new AtomicBoolean(false);
+
+	/**
+	 * The time of the last scheduled repaint
+	 */
+	private volatile long lastRepaintTime = 0;
+
+	/**
+	 * The task of a scheduled repaint
+	 */
+	private final Runnable repaintTask = new Runnable() {
+		@Override
+		public void run() {
+			// changes from now on schedule a new repaint
+			repaintScheduled.set(false);
+			lastRepaintTime = System.currentTimeMillis();
+			repaint();
+		}
+	};
+
 	/**
 	 * Constructor to setup the GUI components
 	 * @param width the width of the graph
@@ -147,22 +256,86 @@ public class GraphPanel extends JPanel {
 	 **/
 	public GraphPanel(int width, int height) {
 		setPreferredSize(new Dimension(width, height));
+
+		addMouseMotionListener(new MouseMotionAdapter() {
+			@Override
+			public void mouseMoved(MouseEvent e) {
+				moveCrosshair(e.getX(), e.getY());
+			}
+		});
+	}
+
+	/**
+	 * Moves the crosshair, repainting only the row and the column it leaves and enters
+	 * The strips are painted at once, one by one, because a single repaint would join them into the whole graph.
+	 * @param x the new position of mouse X
+	 * @param y the new position of mouse Y
+	 */
+	private void moveCrosshair(int x, int y) {
+		int oldX = mouseX;
+		int oldY = mouseY;
+		mouseX = x;
+		mouseY = y;
+
+		// the horizontal line and the value box
+		int rowTop = Math.min(oldY, y) - heightTimeLine;
+		int rowBottom = Math.max(oldY, y) + heightTimeLine;
+		paintImmediately(0, rowTop, getWidth(), rowBottom - rowTop);
+
+		// the vertical line and the date box
+		int columnLeft = Math.min(oldX, x) - widthVertLabel - 1;
+		int columnRight = Math.max(oldX, x) + Math.max(crosshairDateBoxWidth - widthVertLabel, 0) + 2;
+		paintImmediately(columnLeft, 0, columnRight - columnLeft, getHeight());
 	}
 	
 	/**
 	 * Sets the current candle list to be used when drawing the graph each render step
+	 * The list is copied into a {@link CandleFrame} and its value scale is found by scanning the candles
 	 * @param candleList the current candle list to be used when drawing the graph each render step
 	 */
 	public void setCandleList(List<Candle> candleList) {
-		this.candleList = candleList;
+		setCandleFrame(candleList == null ? CandleFrame.EMPTY : new CandleFrame(candleList));
+	}
+
+	/**
+	 * Sets the current candle list to be used when drawing the graph each render step, with its value scale
+	 * The list is copied into a {@link CandleFrame}
+	 * @param candleList the current candle list to be used when drawing the graph each render step
+	 * @param minValue the lowest low of the candles
+	 * @param maxValue the highest high of the candles
+	 */
+	public void setCandleList(List<Candle> candleList, double minValue, double maxValue) {
+		setCandleFrame(candleList == null ? CandleFrame.EMPTY : new CandleFrame(candleList, minValue, maxValue));
+	}
+
+	/**
+	 * Sets the current frame to be used when drawing the graph each render step
+	 * The scale comes with the frame, so painting never scans the candles.
+	 * The frames are immutable, so the same frame again does not repaint
+	 * @param candleFrame the immutable {@link CandleFrame} to draw
+	 */
+	public void setCandleFrame(CandleFrame candleFrame) {
+		candleFrame = candleFrame == null ? CandleFrame.EMPTY : candleFrame;
+		if (candleFrame != this.candleFrame) {
+			this.candleFrame = candleFrame;
+			markDirty();
+		}
+	}
+
+	/**
+	 * Gets the current frame to be used when drawing the graph each render step
+	 * @return the current {@link CandleFrame}
+	 */
+	public CandleFrame getCandleFrame() {
+		return candleFrame;
 	}
 	
 	/**
 	 * Gets the current candle list to be used when drawing the graph each render step
-	 * @return the current candle list to be used when drawing the graph each render step
+	 * @return the current candle list to be used when drawing the graph each render step, unmodifiable
 	 */
 	public Collection<Candle> getCandleList() {
-		return candleList;
+		return candleFrame.getCandleList();
 	}
 	
 	/**
@@ -179,6 +352,7 @@ public class GraphPanel extends JPanel {
 	 */
 	public void setXOffsetPerc(double xOffsetPerc) {
 		this.xOffsetPerc = xOffsetPerc;
+		markDirty();
 	}
 	
 	/**
@@ -187,6 +361,7 @@ public class GraphPanel extends JPanel {
 	 */
 	public void setYOffsetPerc(double yOffsetPerc) {
 		this.yOffsetPerc = yOffsetPerc;
+		markDirty();
 	}
 	
 	/**
@@ -195,36 +370,9 @@ public class GraphPanel extends JPanel {
 	 */
 	public void setGraphVerticalPadding(double verticalPadding) {
 		this.verticalPadding = verticalPadding;
+		markDirty();
 	}
 
-	/**
-	 * Get the minimum value from the candles of the graph
-	 * @return the minimum value from the candles of the graph
-	 */
-	private double getMinValue() {
-		Candle min = Collections.min(candleList, new Comparator<Candle>() {
-			@Override
-			public int compare(Candle o1, Candle o2) {
-				return o1.low - o2.low > 0 ? 1 : -1;
-			}
-		});
-		return min.low;
-	}
-
-	/**
-	 * Get the max value from the candles of the graph
-	 * @return the max value from the candles of the graph
-	 */
-	private double getMaxValue() {
-		Candle max = Collections.max(candleList, new Comparator<Candle>() {
-			@Override
-			public int compare(Candle o1, Candle o2) {
-				return o1.high - o2.high > 0 ? 1 : -1;
-			}
-		});
-		return max.high;
-	}
-	
 	/**
 	 * It draw a candle within the graph
 	 * @param g the {@link Graphics} to render the candles into
@@ -234,7 +382,7 @@ public class GraphPanel extends JPanel {
 	 */
 	private void drawCandle(Graphics g, Candle candle, int index, int numCandles, double minValue, double maxValue) {
 		int graphWidth = this.getWidth() - widthVertLabel;
-		int graphHeight = this.getHeight() - heightTimeLine;
+		int graphHeight = getPriceHeight();
 		int xOffset = (int) (graphWidth * xOffsetPerc);
 		
 		double verticalPaddingDiff = verticalPadding * graphHeight;
@@ -287,76 +435,212 @@ public class GraphPanel extends JPanel {
 		
 		g.drawRect(x, yMaxPos, candleWidth, candleSz);
 		
-		{// draw timeline
-			final int szBoxWidth = (int) (graphWidth / (double)numCandles);
-			int boxWidth = szBoxWidth;
+		drawTimeLabel(g, x, graphWidth, numCandles, candle.finalDate);
+	}
+
+	/**
+	 * It draws a date on the time line, unless it overlaps the last date drawn
+	 * @param g the {@link Graphics} to render the date into
+	 * @param x the x position of the date
+	 * @param graphWidth the width of the graph without the vertical label
+	 * @param numCandles number of candles in the graph
+	 * @param time the date to draw
+	 */
+	private void drawTimeLabel(Graphics g, int x, int graphWidth, int numCandles, long time) {
+		// at least one pixel, or the box never grows when there are more candles than pixels
+		final int szBoxWidth = Math.max((int) (graphWidth / (double)numCandles), 1);
+		int boxWidth = szBoxWidth;
+		
+		int idx = 1;
+		while (boxWidth < 200) {
+			boxWidth = (szBoxWidth * idx++);
+		}
+
+		if (x >= internalLastBoxLimit) {
+			g.setColor(Color.DARK_GRAY);
+			g.drawRect(x, yTimeLine, 0, heightTimeLine);
 			
-			int idx = 1;
-			while (boxWidth < 200) {
-				boxWidth = (szBoxWidth * idx++);
+			g.setColor(Color.BLACK);
+			int labelLength = labelFormatter.formatDate(time, labelChars);
+			g.drawChars(labelChars, 0, labelLength, x + 5, yTimeLine + heightTimeLine - 3);
+			internalLastBoxLimit = x + boxWidth;
+		}
+	}
+
+	/**
+	 * It draws the candles within the graph, skipping the ones out of the panel
+	 * When there are more candles than pixel columns, each column is drawn as the envelope of its candles
+	 * @param g the {@link Graphics} to render the candles into
+	 * @param candleList the candles of the graph
+	 * @param toIndex the index of the last candle to draw, exclusive
+	 * @param minValue the minimum value of the scale
+	 * @param maxValue the maximum value of the scale
+	 */
+	private void drawCandles(Graphics g, List<Candle> candleList, int toIndex, double minValue, double maxValue) {
+		int numCandles = candleList.size();
+		int width = this.getWidth();
+		int graphWidth = width - widthVertLabel;
+		if (graphWidth <= 0) {
+			return;
+		}
+		int xOffset = (int) (graphWidth * xOffsetPerc);
+
+		if (numCandles > graphWidth) {
+			drawCandleColumns(g, candleList, toIndex, graphWidth, xOffset, minValue, maxValue);
+			return;
+		}
+
+		// only the candles whose slot intersects the panel
+		double candlesPerPixel = numCandles / (double)graphWidth;
+		int candleSlot = graphWidth / numCandles;
+		int fromIndex = Math.max((int) Math.floor((-xOffset - candleSlot) * candlesPerPixel), 0);
+		int lastIndex = Math.min((int) Math.ceil((width - xOffset) * candlesPerPixel) + 1, toIndex);
+		for (int index = fromIndex; index < lastIndex; index++) {
+			drawCandle(g, candleList.get(index), index, numCandles, minValue, maxValue);
+		}
+	}
+
+	/**
+	 * It draws one envelope per pixel column, from the highest high to the lowest low of the candles of the column,
+	 * with the body from the open of its first candle to the close of its last candle
+	 * @param g the {@link Graphics} to render the candles into
+	 * @param candleList the candles of the graph, more than the pixel columns
+	 * @param toIndex the index of the last candle to draw, exclusive
+	 * @param graphWidth the width of the graph without the vertical label
+	 * @param xOffset the x offset of the graph in pixels
+	 * @param minValue the minimum value of the scale
+	 * @param maxValue the maximum value of the scale
+	 */
+	private void drawCandleColumns(Graphics g, List<Candle> candleList, int toIndex, int graphWidth, int xOffset, double minValue, double maxValue) {
+		long numCandles = candleList.size();
+		int graphHeight = getPriceHeight();
+		double verticalPaddingDiff = verticalPadding * graphHeight;
+		graphHeight = (int) (graphHeight - verticalPaddingDiff);
+		int yPaddingOffset = (int) (verticalPaddingDiff * 0.5);
+		int yOffset = (int) (graphHeight * yOffsetPerc) + heightTimeLine + yPaddingOffset;
+		double valueRange = maxValue - minValue;
+
+		int firstColumn = Math.max(-xOffset, 0);
+		int lastColumn = Math.min(this.getWidth() - xOffset, graphWidth);
+		for (int column = firstColumn; column < lastColumn; column++) {
+			// the candles whose x falls on this column
+			int fromIndex = (int) ((column * numCandles + graphWidth - 1) / graphWidth);
+			int columnToIndex = (int) Math.min(((column + 1) * numCandles + graphWidth - 1) / graphWidth, toIndex);
+			if (fromIndex >= columnToIndex) {
+				continue;
 			}
 
-			if (x >= internalLastBoxLimit) {
-				g.setColor(Color.DARK_GRAY);
-				g.drawRect(x, yTimeLine, 0, heightTimeLine);
-				
-				g.setColor(Color.BLACK);
-				String strDate = GraphDateUtils.longToStrDate(candle.finalDate);
-				g.drawString(strDate, x + 5, yTimeLine + heightTimeLine - 3);
-				internalLastBoxLimit = x + boxWidth;
+			double high = Double.NEGATIVE_INFINITY;
+			double low = Double.POSITIVE_INFINITY;
+			for (int index = fromIndex; index < columnToIndex; index++) {
+				Candle candle = candleList.get(index);
+				high = Math.max(high, candle.high);
+				low = Math.min(low, candle.low);
 			}
+			double open = candleList.get(fromIndex).open;
+			Candle lastCandle = candleList.get(columnToIndex - 1);
+			double close = lastCandle.close;
+
+			int x = column + xOffset;
+			int yHighPos = (int) ((1 - (high - minValue) / valueRange) * graphHeight) + yOffset;
+			int yLowPos = (int) ((1 - (low - minValue) / valueRange) * graphHeight) + yOffset;
+			int yMaxPos = (int) ((1 - (Math.max(open, close) - minValue) / valueRange) * graphHeight) + yOffset;
+			int yMinPos = (int) ((1 - (Math.min(open, close) - minValue) / valueRange) * graphHeight) + yOffset;
+
+			g.setColor(lightGrayColor);
+			g.drawLine(x, yHighPos, x, yLowPos);
+			g.setColor(close > open ? openCandleColor : closeCandleColor);
+			g.drawLine(x, yMaxPos, x, yMinPos);
+
+			drawTimeLabel(g, x, graphWidth, (int) numCandles, lastCandle.finalDate);
 		}
 	}
 	
 	
 	/**
-	 * It resumes the render loop after draw objects
+	 * Checks if two candles have the same time and values
+	 * @param candle a {@link Candle} or null
+	 * @param otherCandle another {@link Candle} or null
+	 * @return true if both are null or have the same time and values
 	 */
-	@SuppressWarnings("unused")
-	private void resumeLoop() {
-		synchronized (redrawLock) {
-			redrawLock.notify();
+	private static boolean isSameCandle(Candle candle, Candle otherCandle) {
+		if (candle == null || otherCandle == null) {
+			return candle == otherCandle;
 		}
+		return candle.initDate == otherCandle.initDate && candle.open == otherCandle.open && candle.high == otherCandle.high
+				&& candle.low == otherCandle.low && candle.close == otherCandle.close;
 	}
-	
+
 	/**
-	 * It waits for objects to be draw to continue the render loop
-	 */
-	@SuppressWarnings("unused")
-	private void waitForPaint() {
-        try {
-            synchronized (redrawLock) {
-                redrawLock.wait();
-            }
-        } catch (InterruptedException e) {
-        	e.printStackTrace();
-        }
-    }	
+	 * Checks if {@link GraphPanel#closedCandleLayer} was drawn with the same panel, view, scale, closed candles and indicators
+	 * Only the closed candles at both ends are compared, the closed candles between them never change
+	 * @param candleFrame the frame to draw
+	 * @return true if the layer can be drawn as it is
+	 */
+	private boolean isClosedCandleLayerValid(CandleFrame candleFrame) {
+		List<Candle> candleList = candleFrame.getCandleList();
+		int sz = candleList.size();
+		return closedCandleLayer != null
+				&& closedCandleLayer.getWidth() == getWidth() && closedCandleLayer.getHeight() == getHeight()
+				&& layerCandleCount == sz && layerMinValue == candleFrame.getLowValue() && layerMaxValue == candleFrame.getHighValue()
+				&& layerXOffsetPerc == xOffsetPerc && layerYOffsetPerc == yOffsetPerc && layerVerticalPadding == verticalPadding
+				&& isSameCandle(layerFirstCandle, sz > 1 ? candleList.get(0) : null)
+				&& isSameCandle(layerLastCandle, sz > 1 ? candleList.get(sz - 2) : null)
+				&& layerMaxVolume == candleFrame.getMaxVolume()
+				&& hasSameIndicatorValues(candleFrame);
+	}
 
 	/**
-	 * Custom painting
-	 **/
-	public void paintComponent(Graphics g) {
-		super.paintComponent(g);
-		
-		super.addMouseMotionListener(new MouseMotionAdapter() {
-			@Override
-			public void mouseMoved(MouseEvent e) {
-				mouseX = e.getX();
-				mouseY = e.getY();
+	 * Checks if the lines of the indicators of a frame have the values of {@link GraphPanel#layerIndicatorValues} at the last closed candle
+	 * @param candleFrame the frame to draw
+	 * @return true if the frame has the same lines with the same values
+	 */
+	private boolean hasSameIndicatorValues(CandleFrame candleFrame) {
+		int lineCount = candleFrame.getIndicatorLineCount();
+		if (layerIndicatorValues.length != lineCount) {
+			return false;
+		}
+		int lastClosedIndex = Math.max(candleFrame.getCandleList().size() - 2, 0);
+		for (int line = 0; line < lineCount; line++) {
+			if (Double.doubleToLongBits(layerIndicatorValues[line]) != Double.doubleToLongBits(candleFrame.getIndicatorValue(line, lastClosedIndex))) {
+				return false;
 			}
-		});
-		
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the height of the prices, between the time line and the volume pane
+	 * @return the height of the prices in pixels
+	 */
+	private int getPriceHeight() {
+		return (int) ((this.getHeight() - heightTimeLine) * (1 - volumePaneHeightPerc));
+	}
+
+	/**
+	 * Draws the background, the axes and the closed candles, all the candles but the last one,
+	 * and the lines of the indicators up to the last closed candle, on {@link GraphPanel#closedCandleLayer}
+	 * @param candleFrame the frame to draw
+	 */
+	private void paintClosedCandleLayer(CandleFrame candleFrame) {
+		List<Candle> candleList = candleFrame.getCandleList();
+		double minValue = candleFrame.getLowValue();
+		double maxValue = candleFrame.getHighValue();
 		int width = this.getWidth();
 		int height = this.getHeight();
-		
-		setBackground(Color.CYAN);
+		if (closedCandleLayer == null || closedCandleLayer.getWidth() != width || closedCandleLayer.getHeight() != height) {
+			GraphicsConfiguration graphicsConfiguration = getGraphicsConfiguration();
+			closedCandleLayer = graphicsConfiguration != null
+					? graphicsConfiguration.createCompatibleImage(width, height)
+					: new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
 
-		g.setColor(Color.BLACK);
-		g.fillRect(0, 0, width, height);
+		Graphics g = closedCandleLayer.createGraphics();
+		try {
+			g.setFont(getFont());
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, width, height);
 
-		internalLastBoxLimit = 0;
-		if (candleList != null && !candleList.isEmpty()) {
 			{ // timeline background
 				g.setColor(Color.WHITE);
 				g.fillRect(0, yTimeLine, width, heightTimeLine);
@@ -366,27 +650,19 @@ public class GraphPanel extends JPanel {
 				g.setColor(Color.WHITE);
 				g.fillRect(width - widthVertLabel, heightTimeLine, widthVertLabel, height);
 			}
-			
-			double minValue = getMinValue();
-			double maxValue = getMaxValue();
-		
-			long initialTime = 0;
-			long finalTime = 0;
-			
-			int sz = candleList.size();
-			Iterator<Candle> candleIt = candleList.iterator();
-			int index = 0;
-			while (candleIt.hasNext()) {
-				Candle candle = candleIt.next();
-				drawCandle(g, candle, index++, sz, minValue, maxValue);
-				
-				if (initialTime == 0) {
-					initialTime = candle.finalDate;
-				}
-				finalTime = candle.finalDate;
+
+			internalLastBoxLimit = 0;
+			drawVolumes(g, candleFrame, 0, candleList.size() - 1);
+			drawCandles(g, candleList, candleList.size() - 1, minValue, maxValue);
+			drawIndicatorLines(g, candleFrame, 0, candleList.size() - 1);
+
+			{ // border of the volume pane
+				g.setColor(Color.DARK_GRAY);
+				int yVolumePane = heightTimeLine + getPriceHeight();
+				g.drawLine(0, yVolumePane, width - widthVertLabel, yVolumePane);
 			}
 			
-			int graphHeight = this.getHeight() - heightTimeLine;
+			int graphHeight = getPriceHeight();
 			double verticalPaddingDiff = verticalPadding * graphHeight;
 			graphHeight = (int) (graphHeight - verticalPaddingDiff);
 			
@@ -404,54 +680,240 @@ public class GraphPanel extends JPanel {
 					int offsetLabel = 12;
 					int xLabel = width - widthVertLabel + offsetLabel;
 					int yLabel = yBox;
-					String valueLabel = "" + currValue;
-					String[] valueSplit = valueLabel.split("\\.");
-					valueLabel = valueSplit[0] + "." + valueSplit[1].substring(0, (valueSplit[1].length() < 5 ? valueSplit[1].length() : 5));
-					g.drawString(valueLabel, xLabel, yLabel);
+					int labelLength = labelFormatter.formatValue(currValue, 5, labelChars);
+					g.drawChars(labelChars, 0, labelLength, xLabel, yLabel);
 				}
 			}
-			
-			{ // draw line cross
-				if (mouseX < width - widthVertLabel && mouseY > heightTimeLine) {
-					// value
-					g.drawLine(0, mouseY, width - widthVertLabel, mouseY);
-					
-					// time line
-					g.drawLine(mouseX, heightTimeLine, mouseX, height);
+		} finally {
+			g.dispose();
+		}
+
+		layerCandleCount = candleList.size();
+		layerFirstCandle = layerCandleCount > 1 ? candleList.get(0).getCopy() : null;
+		layerLastCandle = layerCandleCount > 1 ? candleList.get(layerCandleCount - 2).getCopy() : null;
+		layerMinValue = minValue;
+		layerMaxValue = maxValue;
+		layerXOffsetPerc = xOffsetPerc;
+		layerYOffsetPerc = yOffsetPerc;
+		layerVerticalPadding = verticalPadding;
+		layerLastBoxLimit = internalLastBoxLimit;
+		layerMaxVolume = candleFrame.getMaxVolume();
+		layerIndicatorValues = new double[candleFrame.getIndicatorLineCount()];
+		for (int line = 0; line < layerIndicatorValues.length; line++) {
+			layerIndicatorValues[line] = candleFrame.getIndicatorValue(line, Math.max(layerCandleCount - 2, 0));
+		}
+	}
+
+	/**
+	 * It draws the volume bars of a range of candles in the volume pane, at the bottom of the graph below the prices
+	 * The bars are scaled by the highest volume of a candle of the frame. When there are more candles than pixel columns,
+	 * each column has the average volume of its candles, taken from the prefix sums of the frame in O(1)
+	 * @param g the {@link Graphics} to render the bars into
+	 * @param candleFrame the frame of the graph
+	 * @param fromIndex the index of the first candle, inclusive
+	 * @param toIndex the index of the last candle, exclusive
+	 */
+	private void drawVolumes(Graphics g, CandleFrame candleFrame, int fromIndex, int toIndex) {
+		int numCandles = candleFrame.getCandleList().size();
+		int width = this.getWidth();
+		int graphWidth = width - widthVertLabel;
+		double maxVolume = candleFrame.getMaxVolume();
+		if (maxVolume <= 0 || graphWidth <= 0) {
+			return;
+		}
+		int paneHeight = this.getHeight() - heightTimeLine - getPriceHeight();
+		int yBottom = this.getHeight();
+		int xOffset = (int) (graphWidth * xOffsetPerc);
+		g.setColor(volumeColor);
+
+		if (numCandles > graphWidth) {
+			int firstColumn = Math.max(-xOffset, 0);
+			int lastColumn = Math.min(width - xOffset, graphWidth);
+			for (int column = firstColumn; column < lastColumn; column++) {
+				// the candles whose x falls on this column
+				int columnFromIndex = (int) Math.max(((long) column * numCandles + graphWidth - 1) / graphWidth, fromIndex);
+				int columnToIndex = (int) Math.min(((long) (column + 1) * numCandles + graphWidth - 1) / graphWidth, toIndex);
+				if (columnFromIndex >= columnToIndex) {
+					continue;
 				}
+				double volume = candleFrame.getVolume(columnFromIndex, columnToIndex) / (columnToIndex - columnFromIndex);
+				int barHeight = (int) (volume / maxVolume * paneHeight);
+				g.drawLine(column + xOffset, yBottom - barHeight, column + xOffset, yBottom);
+			}
+			return;
+		}
+
+		int candleWidth = (int) (graphWidth / (double)numCandles);
+		candleWidth -= (int) (candleWidth * 0.05);
+		// only the candles whose slot intersects the panel
+		double candlesPerPixel = numCandles / (double)graphWidth;
+		int candleSlot = graphWidth / numCandles;
+		fromIndex = Math.max(fromIndex, (int) Math.floor((-xOffset - candleSlot) * candlesPerPixel));
+		toIndex = Math.min(toIndex, (int) Math.ceil((width - xOffset) * candlesPerPixel) + 1);
+		for (int index = fromIndex; index < toIndex; index++) {
+			int barHeight = (int) (candleFrame.getVolume(index) / maxVolume * paneHeight);
+			int x = (int) (index / (double)numCandles * graphWidth) + xOffset;
+			g.fillRect(x, yBottom - barHeight, candleWidth, barHeight);
+		}
+	}
+
+	/**
+	 * It draws the lines of the indicators of a frame between the centers of a range of its candles
+	 * Only the candles within the panel are joined, at most one point per pixel column
+	 * @param g the {@link Graphics} to render the lines into
+	 * @param candleFrame the frame of the graph
+	 * @param fromIndex the index of the first point, inclusive
+	 * @param toIndex the index of the last point, exclusive
+	 */
+	private void drawIndicatorLines(Graphics g, CandleFrame candleFrame, int fromIndex, int toIndex) {
+		int numCandles = candleFrame.getCandleList().size();
+		int width = this.getWidth();
+		int graphWidth = width - widthVertLabel;
+		if (candleFrame.getIndicatorLineCount() == 0 || graphWidth <= 0) {
+			return;
+		}
+		int graphHeight = getPriceHeight();
+		int xOffset = (int) (graphWidth * xOffsetPerc);
+		double verticalPaddingDiff = verticalPadding * graphHeight;
+		graphHeight = (int) (graphHeight - verticalPaddingDiff);
+		int yPaddingOffset = (int) (verticalPaddingDiff * 0.5);
+		int yOffset = (int) (graphHeight * yOffsetPerc) + heightTimeLine + yPaddingOffset;
+		double minValue = candleFrame.getLowValue();
+		double valueRange = candleFrame.getHighValue() - minValue;
+		int halfCandleWidth = (int) (graphWidth / (double)numCandles) / 2;
+
+		// only the candles within the panel, with one candle more at each side to join the lines
+		double candlesPerPixel = numCandles / (double)graphWidth;
+		fromIndex = Math.max(fromIndex, (int) Math.floor(-xOffset * candlesPerPixel) - 1);
+		toIndex = Math.min(toIndex, (int) Math.ceil((width - xOffset) * candlesPerPixel) + 1);
+		int step = Math.max((int) Math.ceil(candlesPerPixel), 1);
+
+		// the bands out of the scale stay within the graph
+		Graphics lineGraphics = g.create();
+		try {
+			lineGraphics.clipRect(0, heightTimeLine, graphWidth, getPriceHeight());
+			for (int line = 0; line < candleFrame.getIndicatorLineCount(); line++) {
+				lineGraphics.setColor(indicatorColors[line % indicatorColors.length]);
+				int lastX = 0;
+				int lastY = 0;
+				boolean hasLast = false;
+				// the last point is always joined, so the line meets the one of the open candle
+				for (int index = fromIndex; index < toIndex; index = index == toIndex - 1 ? toIndex : Math.min(index + step, toIndex - 1)) {
+					double value = candleFrame.getIndicatorValue(line, index);
+					if (Double.isNaN(value)) {
+						hasLast = false;
+						continue;
+					}
+					int x = (int) (index / (double)numCandles * graphWidth) + xOffset + halfCandleWidth;
+					int y = (int) ((1 - (value - minValue) / valueRange) * graphHeight) + yOffset;
+					if (hasLast) {
+						lineGraphics.drawLine(lastX, lastY, x, y);
+					}
+					lastX = x;
+					lastY = y;
+					hasLast = true;
+				}
+			}
+		} finally {
+			lineGraphics.dispose();
+		}
+	}
+
+	/**
+	 * Draws the crosshair and its date and value boxes, over the graph
+	 * @param g the {@link Graphics} to render the crosshair into
+	 * @param candleFrame the frame of the graph
+	 */
+	private void drawCrosshair(Graphics g, CandleFrame candleFrame) {
+		int width = this.getWidth();
+		int height = this.getHeight();
+
+		double minValue = candleFrame.getLowValue();
+		double maxValue = candleFrame.getHighValue();
+		long initialTime = candleFrame.getInitialTime();
+		long finalTime = candleFrame.getFinalTime();
+		
+		int graphHeight = getPriceHeight();
+		double verticalPaddingDiff = verticalPadding * graphHeight;
+		graphHeight = (int) (graphHeight - verticalPaddingDiff);
+		int yPaddingOffset = (int) (verticalPaddingDiff * 0.5);
+		int yOffset = (int) (graphHeight * yOffsetPerc) + heightTimeLine + yPaddingOffset;
+		
+		g.setColor(Color.DARK_GRAY);
+		{ // draw line cross
+			if (mouseX < width - widthVertLabel && mouseY > heightTimeLine) {
+				// value
+				g.drawLine(0, mouseY, width - widthVertLabel, mouseY);
 				
-				// draw current cross time line value
-				double percX = mouseX / (double)(width - widthVertLabel);
-				//System.out.println(width + ", widthVert: " + widthVertLabel + ", "+ (width - widthVertLabel) + ", percX: " + percX);
-				
-				g.setColor(lightBlueColor);
-				g.fillRect(mouseX - widthVertLabel, 0, 120, heightTimeLine - 1);
-				g.setColor(Color.LIGHT_GRAY);
-				g.drawRect(mouseX - widthVertLabel, 0, 120, heightTimeLine - 1);
-				
-				// top date
-				long currDate = initialTime + (long)(percX * (finalTime - initialTime));
-				String strDate = GraphDateUtils.longToStrDate(currDate);
-				//System.out.println("|--- initaltime: " + GraphDateUtils.longToStrDate(initialTime) + ", finaltime: " + GraphDateUtils.longToStrDate(finalTime) + ", perc: " + percX + ", " + strDate);
-				g.setColor(Color.BLACK);
-				g.drawString(strDate, mouseX + 3  - widthVertLabel, heightTimeLine - 2);
-
-				// draw current cross vertical value
-				int heightReducePx = (int) ((height - graphHeight) * 0.5);
-				double percY = (mouseY - heightReducePx) / (double)(graphHeight);
-				
-				g.setColor(lightBlueColor);
-				g.fillRect(width - widthVertLabel, mouseY - (int)(heightTimeLine * 0.5) - 1, widthVertLabel - 1, heightTimeLine + 2);
-				g.setColor(Color.LIGHT_GRAY);
-				g.drawRect(width - widthVertLabel, mouseY - (int)(heightTimeLine * 0.5) - 1, widthVertLabel - 1, heightTimeLine + 2);
-				
-				g.setColor(Color.BLACK);
-				String valueLabel = "" + (minValue + (maxValue - minValue) * (1 - percY));
-				String[] valueSplit = valueLabel.split("\\.");
-				valueLabel = valueSplit[0] + "." + valueSplit[1].substring(0, (valueSplit[1].length() < 5 ? valueSplit[1].length() : 5));
-				g.drawString(valueLabel, width - widthVertLabel + 12, mouseY + (int)(heightTimeLine * 0.5) - 2);
+				// time line
+				g.drawLine(mouseX, heightTimeLine, mouseX, height);
 			}
 			
+			// draw current cross time line value
+			double percX = mouseX / (double)(width - widthVertLabel);
+			//System.out.println(width + ", widthVert: " + widthVertLabel + ", "+ (width - widthVertLabel) + ", percX: " + percX);
+			
+			g.setColor(lightBlueColor);
+			g.fillRect(mouseX - widthVertLabel, 0, crosshairDateBoxWidth, heightTimeLine - 1);
+			g.setColor(Color.LIGHT_GRAY);
+			g.drawRect(mouseX - widthVertLabel, 0, crosshairDateBoxWidth, heightTimeLine - 1);
+			
+			// top date
+			long currDate = initialTime + (long)(percX * (finalTime - initialTime));
+			int dateLength = labelFormatter.formatDate(currDate, labelChars);
+			g.setColor(Color.BLACK);
+			g.drawChars(labelChars, 0, dateLength, mouseX + 3  - widthVertLabel, heightTimeLine - 2);
+
+			// draw current cross vertical value, on the scale of the prices
+			double percY = (mouseY - yOffset) / (double)(graphHeight);
+			
+			g.setColor(lightBlueColor);
+			g.fillRect(width - widthVertLabel, mouseY - (int)(heightTimeLine * 0.5) - 1, widthVertLabel - 1, heightTimeLine + 2);
+			g.setColor(Color.LIGHT_GRAY);
+			g.drawRect(width - widthVertLabel, mouseY - (int)(heightTimeLine * 0.5) - 1, widthVertLabel - 1, heightTimeLine + 2);
+			
+			g.setColor(Color.BLACK);
+			int valueLength = labelFormatter.formatValue(minValue + (maxValue - minValue) * (1 - percY), 5, labelChars);
+			g.drawChars(labelChars, 0, valueLength, width - widthVertLabel + 12, mouseY + (int)(heightTimeLine * 0.5) - 2);
+		}
+	}
+
+	/**
+	 * Custom painting
+	 * The closed candles and the axes come from {@link GraphPanel#closedCandleLayer},
+	 * which is drawn again only when they or the view change
+	 **/
+	public void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		
+		int width = this.getWidth();
+		int height = this.getHeight();
+		
+		setBackground(Color.CYAN);
+
+		CandleFrame candleFrame = this.candleFrame;
+		if (candleFrame.isEmpty()) {
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, width, height);
+		} else {
+			List<Candle> candleList = candleFrame.getCandleList();
+			double minValue = candleFrame.getLowValue();
+			double maxValue = candleFrame.getHighValue();
+
+			if (!isClosedCandleLayerValid(candleFrame)) {
+				paintClosedCandleLayer(candleFrame);
+			}
+			g.drawImage(closedCandleLayer, 0, 0, null);
+
+			// the open candle and its volume, and the lines of the indicators from the last closed candle
+			int sz = candleList.size();
+			internalLastBoxLimit = layerLastBoxLimit;
+			drawVolumes(g, candleFrame, sz - 1, sz);
+			drawCandle(g, candleList.get(sz - 1), sz - 1, sz, minValue, maxValue);
+			drawIndicatorLines(g, candleFrame, Math.max(sz - 2, 0), sz);
+
+			drawCrosshair(g, candleFrame);
+			
 			{ // top right box
 				g.setColor(Color.WHITE);
 				g.fillRect(width - widthVertLabel, 0, widthVertLabel, heightTimeLine);
@@ -459,41 +921,46 @@ public class GraphPanel extends JPanel {
 				g.drawRect(width - widthVertLabel - 1, 0, widthVertLabel, heightTimeLine);
 			}
 		}
-
-		//resumeLoop();
 	}
 	
 	/**
-	 * It starts a candle render loop
+	 * It starts a candle render loop on the shared {@link ReplayScheduler}
 	 */
 	public void startRenderLoop() {
-		Thread renderLoopThread = new Thread() {
-			public void run() {
-				long lastRender = System.currentTimeMillis();
-				while (true) {
-					long currTime = System.currentTimeMillis();
-					
-					repaint();
-					
-					//waitForPaint();
-					
-					long timeFromLastRender = currTime - lastRender;
-					lastRender = currTime;
-					
-					long timeToSleep = stepRateInTime - timeFromLastRender;
-					
-					if (timeToSleep > 0) {
-						try {
-							Thread.sleep(timeToSleep);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-					}
-				}
-			}
-		};
-		
-		renderLoopThread.start();
+		startRenderLoop(ReplayScheduler.getDefault());
+	}
+
+	/**
+	 * It starts a candle render loop
+	 * The graph is repainted only when it changes: new candles or a new view.
+	 * A mouse move repaints only the crosshair, see {@link GraphPanel#moveCrosshair(int, int)}.
+	 * The changes within a frame of {@link GraphPanel#stepRateInTime} are coalesced into one repaint,
+	 * so an idle graph costs nothing.
+	 * @param replayScheduler the {@link ReplayScheduler} running the repaints
+	 */
+	public void startRenderLoop(ReplayScheduler replayScheduler) {
+		this.renderScheduler = replayScheduler;
+		repaintScheduled.set(false);
+		markDirty();
+	}
+
+	/**
+	 * It stops the candle render loop
+	 */
+	public void stopRenderLoop() {
+		this.renderScheduler = null;
+	}
+
+	/**
+	 * Marks the graph as changed, scheduling a repaint unless one is already scheduled
+	 * The repaint waits for the end of the frame of the last one
+	 */
+	private void markDirty() {
+		ReplayScheduler renderScheduler = this.renderScheduler;
+		if (renderScheduler != null && !renderScheduler.isShutdown() && repaintScheduled.compareAndSet(false, true)) {
+			long delay = lastRepaintTime + stepRateInTime - System.currentTimeMillis();
+			renderScheduler.schedule(repaintTask, Math.max(delay, 0));
+		}
 	}
 
 	/**
@@ -35,6 +35,11 @@ public enum PlayThreadStatus {
 	 */
 	PLAYING,
 	
+	/**
+	 * The graph is playing back in time, at the same acceleration
+	 */
+	PLAYING_BACKWARD,
+	
 	/**
 	 * The graph is paused but the play thread is still active
 	 */
@@ -0,0 +1,144 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * The Bollinger bands of the closes of the last candles: their simple moving average,
+ * and the average plus and minus a number of standard deviations
+ *
+ * @author Felipe Santos
+ *
+ */
+public class BollingerBands extends CandleIndicator {
+	/**
+	 * The line of the moving average
+	 */
+	public static final int MIDDLE_LINE = 0;
+
+	/**
+	 * The line of the upper band
+	 */
+	public static final int UPPER_LINE = 1;
+
+	/**
+	 * The line of the lower band
+	 */
+	public static final int LOWER_LINE = 2;
+
+	/**
+	 * The closes of the last candles
+	 */
+	private final RollingWindow window;
+
+	/**
+	 * The number of standard deviations of the bands
+	 */
+	private final double deviations;
+
+	/**
+	 * Constructor with the usual 20 candles and 2 standard deviations
+	 */
+	public BollingerBands() {
+		this(20, 2);
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param period the number of candles of the average
+	 * @param deviations the number of standard deviations of the bands
+	 */
+	public BollingerBands(int period, double deviations) {
+		super("BB " + period + " " + deviations, 3);
+		this.window = new RollingWindow(period);
+		this.deviations = deviations;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addClosedCandle(Candle candle, double[] values) {
+		window.add(candle.close);
+		if (window.getCount() < window.getPeriod()) {
+			setBands(Double.NaN, Double.NaN, values);
+		} else {
+			setBands(window.getSum(), window.getSumOfSquares(), values);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void computeOpenCandle(Candle candle, double[] values) {
+		if (window.getCount() + 1 < window.getPeriod()) {
+			setBands(Double.NaN, Double.NaN, values);
+		} else {
+			double leavingValue = window.getLeavingValue();
+			setBands(window.getSum() - leavingValue + candle.close,
+					window.getSumOfSquares() - leavingValue * leavingValue + candle.close * candle.close, values);
+		}
+	}
+
+	/**
+	 * Sets the average and the bands of a full window
+	 * @param sum the sum of the closes of the window
+	 * @param sumOfSquares the sum of the squares of the closes of the window
+	 * @param values the values of the lines to be filled
+	 */
+	private void setBands(double sum, double sumOfSquares, double[] values) {
+		int period = window.getPeriod();
+		double average = sum / period;
+		// the running sums may leave a tiny negative variance on flat prices
+		double deviation = Math.sqrt(Math.max(sumOfSquares / period - average * average, 0));
+		values[MIDDLE_LINE] = average;
+		values[UPPER_LINE] = average + deviations * deviation;
+		values[LOWER_LINE] = average - deviations * deviation;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void resetState() {
+		window.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Object saveState() {
+		return new RollingWindow(window);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void restoreState(Object state) {
+		window.copyFrom((RollingWindow) state);
+	}
+}
\ No newline at end of file
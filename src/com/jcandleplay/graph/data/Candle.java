@@ -51,7 +51,10 @@ import java.util.List;
  *
  *       
  * The values open, high low and close of a candlesSick are 
- * given by the tick list values: {@link Candle#tickList}
+ * given by the values of its ticks.
+ * By default a candle keeps only these values and the index range of its ticks
+ * in the {@link TickSource}, the ticks themselves are only kept in {@link Candle#tickList}
+ * when they are added with {@link Candle#updateCandle(Tick)}
  * </pre>
  * 
  * @author Felipe Santos
@@ -89,19 +92,39 @@ public class Candle
 	 */
 	public long finalDate;
 	
+	/**
+	 * The index of the first tick of this candle in the {@link TickSource}
+	 */
+	public long initTickIndex;
+
+	/**
+	 * The index after the last tick of this candle in the {@link TickSource}
+	 */
+	public long finalTickIndex;
+
+	/**
+	 * The traded volume of the ticks of this candle
+	 */
+	public double volume;
+
 	/**
 	 * The list of ticks of this candle
+	 * It is null unless the ticks are added with {@link Candle#updateCandle(Tick)}
 	 */
-	public List<Tick> tickList = new ArrayList<Tick>();
+	public List<Tick> tickList;
 	
 	/**
 	 * Updates the value of this candle including {@link Candle#tickList} and {@link Candle#finalDate}
 	 * @param tick the {@link Tick} to update
 	 */
 	public void updateCandle(Tick tick) {
+		if (tickList == null) {
+			tickList = new ArrayList<Tick>();
+		}
 		tickList.add(tick);
 		
 		updateCandleValues(tick);
+		volume += tick.volume;
 		
 		//this.finalDate = tick.timestamp;
 	}
@@ -111,26 +134,60 @@ public class Candle
 	 * @param tick the {@link Tick} to update
 	 */
 	public void updateCandleValues(Tick tick)
+	{
+		updateCandleValues(tick.value);
+	}
+
+	/**
+	 * Updates the values of this candle
+	 * @param value the tick value to update
+	 */
+	public void updateCandleValues(double value)
 	{
 		if (high == -1) {
-			high = tick.value;
-		} else if (tick.value > high) {
-			high = tick.value;
+			high = value;
+		} else if (value > high) {
+			high = value;
 		}
-		
+
 		if (low == -1) {
-			low = tick.value;
-		} else if (tick.value < low) {
-			low = tick.value;
+			low = value;
+		} else if (value < low) {
+			low = value;
 		}
-		
+
 		if (open == -1) {
-			open = tick.value;
+			open = value;
 		}
-		
-		close = tick.value;
+
+		close = value;
 	}
-	
+
+	/**
+	 * Merges a following candle into this one, as if its ticks were added to this candle
+	 * It is used to roll up candles of an interval into candles of a larger interval
+	 * @param candle the following {@link Candle} to merge
+	 */
+	public void mergeCandle(Candle candle)
+	{
+		if (open == -1) {
+			open = candle.open;
+			initTickIndex = candle.initTickIndex;
+		}
+		finalTickIndex = candle.finalTickIndex;
+		volume += candle.volume;
+
+		if (high == -1 || candle.high > high) {
+			high = candle.high;
+		}
+
+		if (low == -1 || candle.low < low) {
+			low = candle.low;
+		}
+
+		close = candle.close;
+	}
+
 	/**
 	 * Creates a copy of this candle
 	 * @return a copy of this candle
@@ -144,11 +201,18 @@ public class Candle
 		candle.close = close;
 		candle.initDate = initDate;
 		candle.finalDate = finalDate;
+		candle.initTickIndex = initTickIndex;
+		candle.finalTickIndex = finalTickIndex;
+		candle.volume = volume;
 		
-		for (Tick tick : tickList) 
+		if (tickList != null)
 		{
-			Tick tickCopy = tick.getCopy();
-			candle.tickList.add(tickCopy);
+			candle.tickList = new ArrayList<Tick>(tickList.size());
+			for (Tick tick : tickList) 
+			{
+				Tick tickCopy = tick.getCopy();
+				candle.tickList.add(tickCopy);
+			}
 		}
 		return candle;
 	}
@@ -0,0 +1,357 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class aggregates ticks into candles incrementally
+ * The candles already built are kept between calls and only the ticks
+ * that crossed the time limit since the last call are aggregated,
+ * so the cost of each call depends on the number of new ticks only.
+ * A large range of new ticks, like a jump to the end of a long history,
+ * is split into time aligned chunks aggregated in parallel.
+ * Going back in time keeps the candles closed before the new time limit, see {@link CandleAggregator#rewind(long)}
+ *
+ * @author Felipe Santos
+ *
+ */
+public class CandleAggregator {
+	/**
+	 * The minimum number of new ticks to aggregate them in parallel
+	 */
+	private static final long PARALLEL_THRESHOLD = 1 << 18;
+
+	/**
+	 * The minimum number of ticks of a chunk aggregated in parallel
+	 */
+	private static final long CHUNK_THRESHOLD = 1 << 16;
+
+	/**
+	 * The pool of the parallel aggregations, shared by all the aggregators
+	 */
+	private static ForkJoinPool forkJoinPool;
+
+	/**
+	 * The interval of each candle
+	 */
+	private final long intervalCandle;
+
+	/**
+	 * The tick source being aggregated
+	 */
+	private TickSource tickSource;
+
+	/**
+	 * The time index of the tick source, its cursor is on the first tick after the time limit
+	 */
+	private TickTimeIndex tickTimeIndex;
+
+	/**
+	 * The index of the next tick to be aggregated
+	 */
+	private long tickCursor = 0;
+
+	/**
+	 * The candles built so far, the last one is the open candle
+	 */
+	private final List<Candle> candleList = new ArrayList<Candle>();
+
+	/**
+	 * Constructor passing fields
+	 * @param intervalCandle the interval of each candle
+	 */
+	public CandleAggregator(long intervalCandle) {
+		this.intervalCandle = intervalCandle;
+	}
+
+	/**
+	 * Gets the interval of each candle
+	 * @return the interval of each candle
+	 */
+	public long getIntervalCandle() {
+		return intervalCandle;
+	}
+
+	/**
+	 * Gets the tick source being aggregated
+	 * @return the tick source being aggregated
+	 */
+	public TickSource getTickSource() {
+		return tickSource;
+	}
+
+	/**
+	 * Sets the tick source to be aggregated
+	 * It also resets the candles already built
+	 * @param tickSource the {@link TickSource} to be aggregated
+	 */
+	public void setTickSource(TickSource tickSource) {
+		this.tickSource = tickSource;
+		this.tickTimeIndex = tickSource == null ? null : new TickTimeIndex(tickSource);
+		reset();
+	}
+
+	/**
+	 * Discards the candles built so far
+	 */
+	public void reset() {
+		tickCursor = 0;
+		candleList.clear();
+	}
+
+	/**
+	 * Aggregates the ticks with timestamp up to the given time limit
+	 * Only the ticks not yet aggregated are processed, the last one is found by {@link CandleAggregator#tickTimeIndex}.
+	 * If the time limit goes back before the last aggregated tick the aggregation is rewound
+	 * @param timeLimit the time limit of the ticks to be aggregated
+	 * @return the number of ticks aggregated by this call
+	 */
+	public long aggregateUntil(long timeLimit) {
+		if (tickTimeIndex == null) {
+			return 0;
+		}
+
+		long finalCursor = tickTimeIndex.advanceTo(timeLimit);
+		if (finalCursor < tickCursor) {
+			rewind(finalCursor);
+		}
+
+		long numTicks = finalCursor - tickCursor;
+		if (numTicks >= PARALLEL_THRESHOLD) {
+			List<Candle> newCandleList = getForkJoinPool().invoke(
+					new AggregationTask(tickSource, intervalCandle, tickCursor, finalCursor));
+
+			// the first new candle may be the continuation of the open candle
+			Candle openCandle = getOpenCandle();
+			int firstNewCandle = 0;
+			if (openCandle != null && openCandle.initDate == newCandleList.get(0).initDate) {
+				openCandle.mergeCandle(newCandleList.get(0));
+				firstNewCandle = 1;
+			}
+			candleList.addAll(newCandleList.subList(firstNewCandle, newCandleList.size()));
+		} else {
+			aggregateRange(tickSource, intervalCandle, tickCursor, finalCursor, candleList);
+		}
+		tickCursor = finalCursor;
+		return numTicks;
+	}
+
+	/**
+	 * Moves the aggregation back to a tick, keeping the candles closed before it
+	 * Each closed candle keeps the range of its ticks, so it is a checkpoint of the aggregation when it closed:
+	 * the candle of the last kept tick is found by a binary search and only its own ticks are aggregated again
+	 * @param cursor the index of the first tick not to be aggregated
+	 */
+	private void rewind(long cursor) {
+		if (cursor == 0 || candleList.isEmpty()) {
+			reset();
+			return;
+		}
+		int index = getCandleIndexAt(tickSource.getTimestamp(cursor - 1));
+		tickCursor = candleList.get(index).initTickIndex;
+		candleList.subList(index, candleList.size()).clear();
+	}
+
+	/**
+	 * Adds a range of ticks to the last candle of a list, opening a new candle when a tick is out of its interval
+	 * A new candle starts with the value of the previous tick, so the candles are continuous.
+	 * Only the values, the tick index range and its volume, from the prefix sums of the source, are kept in the candle
+	 * @param tickSource the {@link TickSource} of the ticks
+	 * @param intervalCandle the interval of each candle
+	 * @param fromIndex the index of the first tick, inclusive
+	 * @param toIndex the index of the last tick, exclusive
+	 * @param candleList the candle list to add the ticks into
+	 */
+	private static void aggregateRange(TickSource tickSource, long intervalCandle, long fromIndex, long toIndex, List<Candle> candleList) {
+		Candle openCandle = candleList.isEmpty() ? null : candleList.get(candleList.size() - 1);
+		for (long index = fromIndex; index < toIndex; index++) {
+			long timestamp = tickSource.getTimestamp(index);
+			long timeCandle = timestamp - timestamp % intervalCandle;
+
+			if (openCandle == null || openCandle.initDate != timeCandle) {
+				if (openCandle != null) {
+					openCandle.volume = tickSource.getVolumeSum(openCandle.initTickIndex, openCandle.finalTickIndex);
+				}
+				openCandle = new Candle();
+				openCandle.initDate = timeCandle;
+				openCandle.finalDate = timeCandle + intervalCandle;
+				openCandle.initTickIndex = index;
+				candleList.add(openCandle);
+
+				if (index > 0) {
+					openCandle.updateCandleValues(tickSource.getValue(index - 1));
+				}
+			}
+
+			openCandle.updateCandleValues(tickSource.getValue(index));
+			openCandle.finalTickIndex = index + 1;
+		}
+		if (openCandle != null) {
+			openCandle.volume = tickSource.getVolumeSum(openCandle.initTickIndex, openCandle.finalTickIndex);
+		}
+	}
+
+	/**
+	 * Gets the pool of the parallel aggregations, creating it on the first use
+	 * @return the pool of the parallel aggregations
+	 */
+	private static synchronized ForkJoinPool getForkJoinPool() {
+		if (forkJoinPool == null) {
+			forkJoinPool = new ForkJoinPool();
+		}
+		return forkJoinPool;
+	}
+
+	/**
+	 * Gets the number of ticks aggregated so far
+	 * @return the number of ticks aggregated so far
+	 */
+	public long getTickCursor() {
+		return tickCursor;
+	}
+
+	/**
+	 * Gets the candles built so far, the last one is the open candle
+	 * @return the candles built so far
+	 */
+	public List<Candle> getCandleList() {
+		return candleList;
+	}
+
+	/**
+	 * Gets the open candle, the one still receiving ticks
+	 * @return the open candle or null if there is no candle
+	 */
+	public Candle getOpenCandle() {
+		return candleList.isEmpty() ? null : candleList.get(candleList.size() - 1);
+	}
+
+	/**
+	 * Gets the index of the last candle starting at or before the given time
+	 * @param time the time to search
+	 * @return the index of the candle or 0 if the time is before the first candle
+	 */
+	public int getCandleIndexAt(long time) {
+		return getCandleIndexAt(candleList, time);
+	}
+
+	/**
+	 * Gets the index of the last candle of a time ordered list starting at or before the given time
+	 * @param candleList the time ordered candle list to search
+	 * @param time the time to search
+	 * @return the index of the candle or 0 if the time is before the first candle
+	 */
+	public static int getCandleIndexAt(List<Candle> candleList, long time) {
+		int low = 0;
+		int high = candleList.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (candleList.get(middle).initDate <= time) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * The task of a parallel aggregation of a range of ticks
+	 * The range is split in two on a candle boundary, so the chunks never share a candle
+	 * and their candle lists are just concatenated
+	 */
+	private static class AggregationTask extends RecursiveTask<List<Candle>> {
+		/**
+		 * Serial version
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The {@link TickSource} of the ticks
+		 */
+		private final TickSource tickSource;
+
+		/**
+		 * The interval of each candle
+		 */
+		private final long intervalCandle;
+
+		/**
+		 * The index of the first tick, inclusive
+		 */
+		private final long fromIndex;
+
+		/**
+		 * The index of the last tick, exclusive
+		 */
+		private final long toIndex;
+
+		/**
+		 * Constructor passing fields
+		 * @param tickSource the {@link TickSource} of the ticks
+		 * @param intervalCandle the interval of each candle
+		 * @param fromIndex the index of the first tick, inclusive
+		 * @param toIndex the index of the last tick, exclusive
+		 */
+		AggregationTask(TickSource tickSource, long intervalCandle, long fromIndex, long toIndex) {
+			this.tickSource = tickSource;
+			this.intervalCandle = intervalCandle;
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected List<Candle> compute() {
+			long splitIndex = toIndex;
+			if (toIndex - fromIndex > CHUNK_THRESHOLD) {
+				// the first tick of the candle after the one of the middle tick
+				long middleTimestamp = tickSource.getTimestamp((fromIndex + toIndex) >>> 1);
+				long nextCandleTime = middleTimestamp - middleTimestamp % intervalCandle + intervalCandle;
+				splitIndex = tickSource.indexAfter(nextCandleTime - 1, fromIndex, toIndex);
+			}
+
+			if (splitIndex >= toIndex) {
+				List<Candle> candleList = new ArrayList<Candle>();
+				aggregateRange(tickSource, intervalCandle, fromIndex, toIndex, candleList);
+				return candleList;
+			}
+
+			AggregationTask leftTask = new AggregationTask(tickSource, intervalCandle, fromIndex, splitIndex);
+			AggregationTask rightTask = new AggregationTask(tickSource, intervalCandle, splitIndex, toIndex);
+			leftTask.fork();
+			List<Candle> rightList = rightTask.compute();
+			List<Candle> candleList = leftTask.join();
+			candleList.addAll(rightList);
+			return candleList;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is an immutable frame of a replay: the candles of the window with their value range and time range
+ * A frame is built by the play thread and published whole, so the render thread always reads
+ * candles and scales of the same step without locking.
+ * The candles of a frame must not be changed, the open candle is already a copy.
+ * A frame of a replay also has the values of the indicators of its interval at each candle, see {@link CandleIndicator}.
+ * The prefix sums of the volumes of the candles answer the volume of any range of candles in O(1).
+ *
+ * @author Felipe Santos
+ *
+ */
+public class CandleFrame {
+	/**
+	 * The lines of a frame without indicators
+	 */
+	private static final double[][] NO_INDICATOR_LINES = new double[0][];
+
+	/**
+	 * The frame without candles
+	 */
+	public static final CandleFrame EMPTY = new CandleFrame(Collections.<Candle>emptyList(), 0, 0, NO_INDICATOR_LINES);
+
+	/**
+	 * The candles of the frame, unmodifiable
+	 */
+	private final List<Candle> candleList;
+
+	/**
+	 * The lowest low of the candles
+	 */
+	private final double lowValue;
+
+	/**
+	 * The highest high of the candles
+	 */
+	private final double highValue;
+
+	/**
+	 * The initial date of the first candle
+	 */
+	private final long initialTime;
+
+	/**
+	 * The final date of the last candle
+	 */
+	private final long finalTime;
+
+	/**
+	 * The values of each line of the indicators, by candle
+	 */
+	private final double[][] indicatorLines;
+
+	/**
+	 * The sums of the volumes of the candles before each index
+	 */
+	private final double[] volumeSums;
+
+	/**
+	 * The highest volume of a candle
+	 */
+	private final double maxVolume;
+
+	/**
+	 * Constructor copying a candle list, the value range is found by scanning the candles
+	 * @param candleList the candles of the frame
+	 */
+	public CandleFrame(List<Candle> candleList) {
+		this(candleList, getLowValue(candleList), getHighValue(candleList));
+	}
+
+	/**
+	 * Constructor copying a candle list
+	 * @param candleList the candles of the frame
+	 * @param lowValue the lowest low of the candles
+	 * @param highValue the highest high of the candles
+	 */
+	public CandleFrame(List<Candle> candleList, double lowValue, double highValue) {
+		this(new ArrayList<Candle>(candleList), lowValue, highValue, NO_INDICATOR_LINES);
+	}
+
+	/**
+	 * Constructor passing fields, keeping the list itself
+	 * @param candleList the candles of the frame, not referenced by anything else
+	 * @param lowValue the lowest low of the candles
+	 * @param highValue the highest high of the candles
+	 * @param indicatorLines the values of each line of the indicators, by candle
+	 */
+	CandleFrame(List<Candle> candleList, double lowValue, double highValue, double[][] indicatorLines) {
+		this.candleList = Collections.unmodifiableList(candleList);
+		this.lowValue = lowValue;
+		this.highValue = highValue;
+		this.indicatorLines = indicatorLines;
+
+		this.volumeSums = new double[candleList.size() + 1];
+		double maxVolume = 0;
+		for (int i = 0; i < candleList.size(); i++) {
+			double volume = candleList.get(i).volume;
+			volumeSums[i + 1] = volumeSums[i] + volume;
+			maxVolume = Math.max(maxVolume, volume);
+		}
+		this.maxVolume = maxVolume;
+		if (candleList.isEmpty()) {
+			this.initialTime = 0;
+			this.finalTime = 0;
+		} else {
+			this.initialTime = candleList.get(0).initDate;
+			this.finalTime = candleList.get(candleList.size() - 1).finalDate;
+		}
+	}
+
+	/**
+	 * Gets the lowest low of a candle list
+	 * @param candleList the candles
+	 * @return the lowest low, 0 if there is no candle
+	 */
+	private static double getLowValue(List<Candle> candleList) {
+		if (candleList.isEmpty()) {
+			return 0;
+		}
+		double lowValue = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < candleList.size(); i++) {
+			lowValue = Math.min(lowValue, candleList.get(i).low);
+		}
+		return lowValue;
+	}
+
+	/**
+	 * Gets the highest high of a candle list
+	 * @param candleList the candles
+	 * @return the highest high, 0 if there is no candle
+	 */
+	private static double getHighValue(List<Candle> candleList) {
+		if (candleList.isEmpty()) {
+			return 0;
+		}
+		double highValue = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < candleList.size(); i++) {
+			highValue = Math.max(highValue, candleList.get(i).high);
+		}
+		return highValue;
+	}
+
+	/**
+	 * Gets the candles of the frame
+	 * @return the unmodifiable list of candles
+	 */
+	public List<Candle> getCandleList() {
+		return candleList;
+	}
+
+	/**
+	 * Checks if the frame has no candle
+	 * @return true if the frame has no candle
+	 */
+	public boolean isEmpty() {
+		return candleList.isEmpty();
+	}
+
+	/**
+	 * Gets the lowest low of the candles
+	 * @return the lowest low of the candles
+	 */
+	public double getLowValue() {
+		return lowValue;
+	}
+
+	/**
+	 * Gets the highest high of the candles
+	 * @return the highest high of the candles
+	 */
+	public double getHighValue() {
+		return highValue;
+	}
+
+	/**
+	 * Gets the initial date of the first candle
+	 * @return the initial date of the first candle, 0 if there is no candle
+	 */
+	public long getInitialTime() {
+		return initialTime;
+	}
+
+	/**
+	 * Gets the final date of the last candle
+	 * @return the final date of the last candle, 0 if there is no candle
+	 */
+	public long getFinalTime() {
+		return finalTime;
+	}
+
+	/**
+	 * Gets the volume of a candle
+	 * @param index the index of the candle
+	 * @return the volume of the candle
+	 */
+	public double getVolume(int index) {
+		return candleList.get(index).volume;
+	}
+
+	/**
+	 * Gets the total volume of a range of candles
+	 * @param fromIndex the index of the first candle, inclusive
+	 * @param toIndex the index of the last candle, exclusive
+	 * @return the sum of the volumes of the candles
+	 */
+	public double getVolume(int fromIndex, int toIndex) {
+		return volumeSums[toIndex] - volumeSums[fromIndex];
+	}
+
+	/**
+	 * Gets the highest volume of a candle of the frame
+	 * @return the highest volume of a candle, 0 if the ticks have no volume
+	 */
+	public double getMaxVolume() {
+		return maxVolume;
+	}
+
+	/**
+	 * Gets the number of lines of the indicators of the frame
+	 * @return the number of lines of the indicators
+	 */
+	public int getIndicatorLineCount() {
+		return indicatorLines.length;
+	}
+
+	/**
+	 * Gets the value of a line of the indicators at a candle
+	 * @param line the index of the line
+	 * @param index the index of the candle
+	 * @return the value, {@link Double#NaN} if the indicator has no value at the candle
+	 */
+	public double getIndicatorValue(int line, int index) {
+		return indicatorLines[line][index];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a technical indicator computed incrementally over a candle list, one value per candle for each of its lines
+ * Each closed candle is added once to the state of the indicator, in O(1).
+ * The value of the open candle is computed from that state without changing it,
+ * so the open candle can be updated at every step and closed later.
+ * The state is saved every {@link CandleIndicator#CHECKPOINT_CANDLES} closed candles,
+ * so going back in time restores the nearest checkpoint and adds only the closed candles after it.
+ *
+ * The indicators are kept up to date by {@link CandlePyramid}, see {@link CandlePyramid#addIndicator(CandleInterval, CandleIndicator)}.
+ * The values before the indicator has enough candles are {@link Double#NaN}.
+ *
+ * @author Felipe Santos
+ *
+ */
+public abstract class CandleIndicator {
+	/**
+	 * The number of closed candles between two checkpoints of the state
+	 */
+	private static final int CHECKPOINT_CANDLES = 64;
+
+	/**
+	 * The name of the indicator
+	 */
+	private final String name;
+
+	/**
+	 * The values of each line, by candle index
+	 */
+	private final double[][] lines;
+
+	/**
+	 * The values of the lines of the candle being added
+	 */
+	private final double[] candleValues;
+
+	/**
+	 * The number of candles with values
+	 */
+	private int size = 0;
+
+	/**
+	 * The number of closed candles added to the state
+	 */
+	private int closedCount = 0;
+
+	/**
+	 * The saved states, the one at index i after (i + 1) * {@link CandleIndicator#CHECKPOINT_CANDLES} closed candles
+	 */
+	private final List<Object> checkpoints = new ArrayList<Object>();
+
+	/**
+	 * Constructor passing fields
+	 * @param name the name of the indicator
+	 * @param lineCount the number of lines of the indicator
+	 */
+	protected CandleIndicator(String name, int lineCount) {
+		this.name = name;
+		this.lines = new double[lineCount][16];
+		this.candleValues = new double[lineCount];
+	}
+
+	/**
+	 * Adds a closed candle to the state of the indicator
+	 * @param candle the closed {@link Candle}
+	 * @param values the values of the lines at the candle, to be filled
+	 */
+	protected abstract void addClosedCandle(Candle candle, double[] values);
+
+	/**
+	 * Computes the values of the open candle, as if it closed now, without changing the state of the indicator
+	 * @param candle the open {@link Candle}
+	 * @param values the values of the lines at the candle, to be filled
+	 */
+	protected abstract void computeOpenCandle(Candle candle, double[] values);
+
+	/**
+	 * Discards the state of the indicator
+	 */
+	protected abstract void resetState();
+
+	/**
+	 * Saves a copy of the state of the indicator
+	 * @return the copy of the state, it is not changed afterwards
+	 */
+	protected abstract Object saveState();
+
+	/**
+	 * Restores a state saved by {@link CandleIndicator#saveState()}
+	 * The saved state may be restored again, so it must be copied and not changed
+	 * @param state the saved state
+	 */
+	protected abstract void restoreState(Object state);
+
+	/**
+	 * Makes the indicator match a candle list that only changed from its open candle on
+	 * The new closed candles are added to the state and the open candle is computed again.
+	 * A list with less closed candles than the ones already added went back in time,
+	 * so the state is restored from the last checkpoint within the list
+	 * @param candleList the candle list, the last one is the open candle
+	 */
+	public void sync(List<Candle> candleList) {
+		int listSize = candleList.size();
+		if (listSize <= closedCount) {
+			rewind(Math.max(listSize - 1, 0));
+		}
+
+		ensureCapacity(listSize);
+		for (int index = closedCount; index < listSize - 1; index++) {
+			addClosedCandle(candleList.get(index), candleValues);
+			setValues(index);
+			if ((index + 1) % CHECKPOINT_CANDLES == 0) {
+				checkpoints.add(saveState());
+			}
+		}
+		closedCount = Math.max(listSize - 1, 0);
+
+		if (listSize > 0) {
+			computeOpenCandle(candleList.get(listSize - 1), candleValues);
+			setValues(listSize - 1);
+		}
+		size = listSize;
+	}
+
+	/**
+	 * Moves the state back to the last checkpoint within a number of closed candles
+	 * @param closedSize the number of closed candles to keep
+	 */
+	private void rewind(int closedSize) {
+		int checkpoint = closedSize / CHECKPOINT_CANDLES;
+		checkpoints.subList(checkpoint, checkpoints.size()).clear();
+		if (checkpoint == 0) {
+			resetState();
+		} else {
+			restoreState(checkpoints.get(checkpoint - 1));
+		}
+		closedCount = checkpoint * CHECKPOINT_CANDLES;
+	}
+
+	/**
+	 * Discards the values and the state of the indicator
+	 */
+	public void clear() {
+		resetState();
+		checkpoints.clear();
+		size = 0;
+		closedCount = 0;
+	}
+
+	/**
+	 * Grows the lines to hold a number of candles
+	 * @param capacity the number of candles
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > lines[0].length) {
+			int newCapacity = Math.max(capacity, lines[0].length * 2);
+			for (int line = 0; line < lines.length; line++) {
+				lines[line] = Arrays.copyOf(lines[line], newCapacity);
+			}
+		}
+	}
+
+	/**
+	 * Stores the values of the candle being added
+	 * @param index the index of the candle
+	 */
+	private void setValues(int index) {
+		for (int line = 0; line < lines.length; line++) {
+			lines[line][index] = candleValues[line];
+		}
+	}
+
+	/**
+	 * Gets the name of the indicator
+	 * @return the name of the indicator
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of lines of the indicator
+	 * @return the number of lines of the indicator
+	 */
+	public int getLineCount() {
+		return lines.length;
+	}
+
+	/**
+	 * Gets the number of candles with values
+	 * @return the number of candles with values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the value of a line at a candle
+	 * @param line the index of the line
+	 * @param index the index of the candle
+	 * @return the value, {@link Double#NaN} if the indicator has not enough candles yet
+	 */
+	public double getValue(int line, int index) {
+		return lines[line][index];
+	}
+}
\ No newline at end of file
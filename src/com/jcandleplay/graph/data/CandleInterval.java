@@ -0,0 +1,100 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * The intervals a candle can have
+ * Each interval is a multiple of the previous one,
+ * so the candles of an interval can be rolled up from the candles of the previous one
+ * @author Felipe Santos
+ *
+ */
+public enum CandleInterval {
+	/**
+	 * One second candles
+	 */
+	SECOND_1("1s", 1000l),
+
+	/**
+	 * One minute candles
+	 */
+	MINUTE_1("1m", 1000l * 60),
+
+	/**
+	 * Five minutes candles
+	 */
+	MINUTE_5("5m", 1000l * 60 * 5),
+
+	/**
+	 * Fifteen minutes candles
+	 */
+	MINUTE_15("15m", 1000l * 60 * 15),
+
+	/**
+	 * One hour candles
+	 */
+	HOUR_1("1h", 1000l * 60 * 60),
+
+	/**
+	 * One day candles
+	 */
+	DAY_1("1d", 1000l * 60 * 60 * 24);
+
+	/**
+	 * The short label of the interval
+	 */
+	private final String label;
+
+	/**
+	 * The interval in milliseconds
+	 */
+	private final long millis;
+
+	/**
+	 * Constructor passing fields
+	 * @param label the short label of the interval
+	 * @param millis the interval in milliseconds
+	 */
+	private CandleInterval(String label, long millis) {
+		this.label = label;
+		this.millis = millis;
+	}
+
+	/**
+	 * Gets the interval in milliseconds
+	 * @return the interval in milliseconds
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return label;
+	}
+}
\ No newline at end of file
@@ -30,17 +30,17 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.awt.Insets;
 import java.awt.Label;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.Vector;
 
 import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
 import javax.swing.JSlider;
@@ -65,11 +65,6 @@ public class CandlePlay {
 	 */
 	private Container container;
 	
-	/**
-	 * The data tick list 
-	 */
-	private List<Tick> tickList;
-	
 	/**
 	 * The width of the {@link CandlePlay#graph}
 	 */
@@ -86,39 +81,10 @@ public class CandlePlay {
 	private GraphPanel graph;
 	
 	/**
-	 * The velocity the time is playing
-	 * 1 x is the real time acceleration
-	 */
-	private double timeAcceleration = 1;
-	
-	/**
-	 * 
-	 */
-	private double timePosition = 0;
-	
-	/**
-	 * The play thread that handles the candles input for drawing
-	 */
-	private Thread playThread;
-
-	/**
-	 * The play thread status
-	 */
-	private PlayThreadStatus playThreadStatus = PlayThreadStatus.PLAYING;
-	
-	/**
-	 * The internal variable to handle accumulated time since last candle draw
+	 * The headless replay of the ticks, this play is one of its consumers
 	 */
-	private long internalAnimatedAccumTime = 0;
-	
-	private long initialTime = 0;
+	private final CandleReplay candleReplay;
 
-	/**
-	 * The interval of the candle
-	 * It initializes with one minute
-	 */
-	private final long internalIntervalCandle = 1000 * 60;
-	
 	/**
 	 * Factor for using when setting the max range of candles to be displayed
 	 */
@@ -130,7 +96,7 @@ public class CandlePlay {
 	 * @param height the height of the {@link CandlePlay#graph}
 	 */
 	public CandlePlay(Container container, int width, int height) {
-		this(container, null, width, height);
+		this(container, (TickSource) null, width, height);
 	}
 
 	/**
@@ -140,12 +106,29 @@ public class CandlePlay {
 	 * @param height the height of the {@link CandlePlay#graph}
 	 */
     public CandlePlay(Container container, List<Tick> tickList, int width, int height) {
+    	this(container, tickList == null ? null : new TickStore(tickList), width, height);
+    }
+
+	/**
+	 * Constructor passing fields
+	 * @param tickSource the data tick source to be drawn
+	 * @param width the width of the {@link CandlePlay#graph}
+	 * @param height the height of the {@link CandlePlay#graph}
+	 */
+    public CandlePlay(Container container, TickSource tickSource, int width, int height) {
     	this.container = container;
-    	this.tickList = tickList;
+    	this.candleReplay = new CandleReplay(tickSource);
     	this.width = width;
     	this.height = height;
     	
     	initGraph();
+
+    	candleReplay.addCandleReplayListener(new CandleReplayListener() {
+			@Override
+			public void candlesUpdated(CandleReplay candleReplay, CandleFrame candleFrame) {
+				graph.setCandleFrame(candleFrame);
+			}
+		});
 	}
 
     /**
@@ -164,6 +147,73 @@ public class CandlePlay {
 		setupSliderTimeVelocity(container);
 		
 		setupSliderTimePosition(container);
+
+		setupComboCandleInterval(container);
+
+		setupPlayButtons(container);
+	}
+
+	/**
+	 * It sets up the graph's play buttons: play backward, step back one candle, pause, step forward one candle and play
+	 * @param pane the container to put the buttons
+	 */
+	private void setupPlayButtons(Container pane) {
+		Font font = new Font("Arial", Font.PLAIN, 10);
+		String[] texts = {"<<", "|<", "||", ">|", ">>"};
+		for (int i = 0; i < texts.length; i++) {
+			final int button = i;
+			JButton playButton = new JButton(texts[i]);
+			playButton.addActionListener(new ActionListener() {
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					switch (button) {
+					case 0:
+						setPlayThreadStatus(PlayThreadStatus.PLAYING_BACKWARD);
+						break;
+					case 1:
+						stepBack();
+						break;
+					case 2:
+						setPlayThreadStatus(PlayThreadStatus.PAUSED);
+						break;
+					case 3:
+						stepForward();
+						break;
+					default:
+						setPlayThreadStatus(PlayThreadStatus.PLAYING);
+					}
+				}
+			});
+			playButton.setFont(font);
+			playButton.setMargin(new Insets(0, 0, 0, 0));
+			graph.add(playButton);
+			playButton.setBounds(330 + i * 30, 30, 28, 20);
+		}
+
+		Label label = new Label("Reproduo", Label.CENTER);
+		label.setFont(font);
+		graph.add(label);
+		label.setBounds(330, 50, 148, 20);
+	}
+
+	/**
+	 * It sets up the graph's candle interval combo
+	 * @param pane the container to put the combo
+	 */
+	private void setupComboCandleInterval(Container pane) {
+		JComboBox<CandleInterval> candleIntervalCombo = new JComboBox<CandleInterval>(CandleInterval.values());
+		candleIntervalCombo.setSelectedItem(candleReplay.getCandleInterval());
+		candleIntervalCombo.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JComboBox<?> source = (JComboBox<?>)e.getSource();
+				setCandleInterval((CandleInterval)source.getSelectedItem());
+			}
+		});
+		Font font = new Font("Arial", Font.PLAIN, 10);
+		candleIntervalCombo.setFont(font);
+		graph.add(candleIntervalCombo);
+		candleIntervalCombo.setBounds(260, 30, 60, 20);
 	}
 	
 	private void setupSliderTimePosition(Container pane) {
@@ -176,13 +226,7 @@ public class CandlePlay {
 			public void stateChanged(ChangeEvent e) {
 				JSlider source = (JSlider)e.getSource();
 				if (!source.getValueIsAdjusting()) {
-					timePosition = source.getValue() / 100f;
-					if (tickList.size() > 0) {
-						long lastTick = tickList.get(tickList.size() - 1).timestamp;
-						long firstTick = tickList.get(0).timestamp;
-						internalAnimatedAccumTime = (long)((lastTick - firstTick) * timePosition);
-						initialTime = firstTick;
-					}
+					candleReplay.setTimePosition(source.getValue() / 100f);
 				}
 			}
 		});
@@ -216,7 +260,7 @@ public class CandlePlay {
 			public void stateChanged(ChangeEvent e) {
 				JSlider source = (JSlider)e.getSource();
 				if (!source.getValueIsAdjusting()) {
-					timeAcceleration = source.getValue();
+					candleReplay.setTimeAcceleration(source.getValue());
 				}
 			}
 		});
@@ -256,6 +300,7 @@ public class CandlePlay {
 			public void adjustmentValueChanged(AdjustmentEvent e) {
 				int scrollVerticalOffsetValue = e.getValue();
 				graph.setHorizontalOffset(scrollVerticalOffsetValue / 100.0);
+				candleReplay.setWindowOffset(scrollVerticalOffsetValue / 100.0);
 			}
 		});
 
@@ -314,12 +359,29 @@ public class CandlePlay {
 		pane.add(panel, BorderLayout.LINE_END);
 	}
 
+	/**
+	 * Sets the interval of the candles
+	 * The candles of every interval are already built, so switching takes effect on the next frame
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 */
+	public void setCandleInterval(CandleInterval candleInterval) {
+		candleReplay.setCandleInterval(candleInterval);
+	}
+
+	/**
+	 * Gets the interval of the candles
+	 * @return the {@link CandleInterval} of the candles
+	 */
+	public CandleInterval getCandleInterval() {
+		return candleReplay.getCandleInterval();
+	}
+
 	/**
 	 * Sets the time acceleration of graph plotting
 	 * @param timeAcceleration the time acceleration of graph plotting
 	 */
 	public void setTimeAcceleration(double timeAcceleration) {
-		this.timeAcceleration = timeAcceleration;
+		candleReplay.setTimeAcceleration(timeAcceleration);
 	}
 
 	/**
@@ -327,146 +389,102 @@ public class CandlePlay {
 	 */
 	public void play() {
 		// it starts the graph render loop
-		graph.startRenderLoop();
+		graph.startRenderLoop(candleReplay.getReplayScheduler());
 		
-		this.playThread = new Thread("CandlePlay.play thread") {
-			long lastTime = System.currentTimeMillis();
-			
-			public void run() {
-				while (playThreadStatus != PlayThreadStatus.INACTIVATED) {
-					if (playThreadStatus == PlayThreadStatus.PLAYING) {
-						if (tickList != null && !tickList.isEmpty()) {
-							
-							if (initialTime == 0) {
-								initialTime = tickList.get(0).timestamp;
-							}
-							List<Tick> tickListFiltered = new Vector<>();
-							
-							{ // updates the current initial time and window by horizontal zoom and offset
-								int window = 2000;
-								int numTicks = getTickListFilteringAccuTime(tickList).size() - window;
-								if (numTicks < 0) {
-									tickListFiltered = tickList;
-								} else {
-									int finalTick = window + (int) (numTicks * graph.getHorizontalOffset());
-									int initialTick = finalTick - window;
-								
-									tickListFiltered = tickList.subList(initialTick, finalTick);
-								}
-							}
-							
-							long currTime = System.currentTimeMillis();
-							long diffFromLastTime = (long) ((currTime - lastTime) * timeAcceleration);
-							List<Candle> dataTickList = getCandleList(diffFromLastTime, tickListFiltered);
-							//List<Candle> dataTickList = getCandleList(diffFromLastTime, tickList);
-							
-							graph.setCandleList(dataTickList);
-							lastTime = currTime;
-							
-							// frame rate of candle insertions
-							final long millis = 100;
-							try {
-								Thread.sleep(millis);
-							} catch (InterruptedException e) {
-								e.printStackTrace();
-							}
-						}
-					}
-				}
-			}
+		candleReplay.play();
+	}
 
-			private List<Tick> getTickListFilteringAccuTime(List<Tick> tickList) {
-				List<Tick> list = new ArrayList<Tick>();
-				for (Tick tick : tickList) {
-					long timeLimit = initialTime + internalAnimatedAccumTime;
-					if (tick.timestamp <= timeLimit) {
-						list.add(tick);
-					}
-				}
-				return list;
-			}
-		};
-		
-		playThread.start();
+	/**
+	 * It stops the graph play of candles and its render loop
+	 * Their frames are no longer scheduled, so a closed chart leaves no thread behind
+	 */
+	public void stop() {
+		candleReplay.stop();
+		graph.stopRenderLoop();
+	}
+
+	/**
+	 * Gets the headless replay drawn by this play
+	 * More listeners can be added to it to consume the same candles
+	 * @return the {@link CandleReplay} of this play
+	 */
+	public CandleReplay getCandleReplay() {
+		return candleReplay;
+	}
+
+	/**
+	 * Opens a live feed of ticks with the default capacity
+	 * @return the {@link TickRingBuffer} where the feed thread appends the ticks
+	 */
+	public TickRingBuffer openLiveFeed() {
+		return candleReplay.openLiveFeed();
+	}
+
+	/**
+	 * Opens a live feed of ticks
+	 * @param capacity the number of ticks the feed buffers between two drains of the play thread
+	 * @return the {@link TickRingBuffer} where the feed thread appends the ticks
+	 * @see CandleReplay#openLiveFeed(int)
+	 */
+	public TickRingBuffer openLiveFeed(int capacity) {
+		return candleReplay.openLiveFeed(capacity);
 	}
 	
 	/**
 	 * Sets the current play thread status
-	 * It also handles the thread wait notify 
 	 * @param playThreadStatus the graph {@link PlayThreadStatus}
 	 */
 	public void setPlayThreadStatus(PlayThreadStatus playThreadStatus) {
-		this.playThreadStatus = playThreadStatus;
+		candleReplay.setPlayThreadStatus(playThreadStatus);
 	}
 
 	/**
-	 * Gets the list of candles to added since the last print
-	 * 
-	 * @param diffFromLastTime the last time the candles were printed
-	 * @param tickList the tick list of candles to filter
-	 * @return the list of candles to be added
+	 * Steps the play forward to the end of the next candle, also while paused
 	 */
-	private List<Candle> getCandleList(long diffFromLastTime, List<Tick> tickList) {
-		Tick lastTick = null;
-		
-		internalAnimatedAccumTime += diffFromLastTime;
-		
-		SortedMap<Long, Candle> candleMap = new TreeMap<Long, Candle>();
-		
-		for (Tick tick : tickList) {
-			long timeLimit = initialTime + internalAnimatedAccumTime;
-			
-			if (tick.timestamp <= timeLimit) {
-				long timeCandle = tick.timestamp - tick.timestamp % internalIntervalCandle;
-
-				Candle candleOnMap = candleMap.get(timeCandle);
-				if (candleOnMap == null) {
-					candleOnMap = new Candle();
-					candleOnMap.initDate = timeCandle;
-					candleMap.put(timeCandle, candleOnMap);
-					
-					if (lastTick != null) {
-						candleOnMap.updateCandleValues(lastTick);
-					}
-				}
-				
-				candleOnMap.updateCandle(tick);
-				candleOnMap.finalDate = timeCandle + internalIntervalCandle;
-				lastTick = tick;
-			}
-		}
-		
-		Collection<Candle> candleCollection = candleMap.values();
-		List<Candle> candleList = new Vector<Candle>();
-		Candle lastCandle = null;
-		for (Candle candle : candleCollection) {
-			if (lastCandle != null) {
-				long timeDiff = candle.finalDate - lastCandle.finalDate;
-				long numIt = timeDiff / internalIntervalCandle -1;
-				for (long i = 0; i < numIt; i++) {
-					Candle newCandle = new Candle();
-					newCandle.open = lastCandle.close;
-					newCandle.high = lastCandle.close;
-					newCandle.low = lastCandle.close;
-					newCandle.close = lastCandle.close;
-					Tick tick = new Tick(lastCandle.close, candle.finalDate + (internalIntervalCandle * (i + 1)));
-					newCandle.tickList.add(tick);
-					Candle candleCopy = lastCandle.getCopy();
-					candleList.add(candleCopy);
-				}
-			}
-			candleList.add(candle);
-			lastCandle = candle;
-		}
-			
-		return candleList;
+	public void stepForward() {
+		candleReplay.stepForward();
 	}
-	
+
+	/**
+	 * Steps the play back to the end of the previous candle, also while paused
+	 */
+	public void stepBack() {
+		candleReplay.stepBack();
+	}
+
 	/**
 	 * Sets the current list of candles to be printed
+	 * The ticks are copied to a new {@link TickStore}
 	 * @param tickList
 	 */
 	public void setTickList(List<Tick> tickList) {
-		this.tickList = tickList;
+		setTickStore(new TickStore(tickList));
+	}
+
+	/**
+	 * Gets the ticks of a candle from the current tick source
+	 * The candles keep only the index range of their ticks, so the ticks are created on demand
+	 * @param candle the {@link Candle} to drill down
+	 * @return a new list with the ticks of the candle
+	 */
+	public List<Tick> getTickList(Candle candle) {
+		return candleReplay.getTickList(candle);
+	}
+
+	/**
+	 * Sets the current store of ticks to be printed
+	 * @param tickStore the {@link TickStore} to be printed
+	 */
+	public void setTickStore(TickStore tickStore) {
+		setTickSource(tickStore);
+	}
+
+	/**
+	 * Sets the current source of ticks to be printed, like a {@link TickStore} or a {@link MappedTickFile}
+	 * The candles are rebuilt by the play thread on its next frame
+	 * @param tickSource the {@link TickSource} to be printed
+	 */
+	public void setTickSource(TickSource tickSource) {
+		candleReplay.setTickSource(tickSource);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,287 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class keeps the candles of every {@link CandleInterval} of the played ticks
+ * Only the smallest interval is aggregated from the ticks,
+ * each larger interval is rolled up from the candles of the previous interval.
+ * The closed candles of every interval are kept, so switching interval needs no aggregation at all
+ * and each update only rolls up the candles of the open buckets.
+ * Going back in time only drops the candles after the new open candle of each interval,
+ * the range indexes and the indicators follow from their own checkpoints.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class CandlePyramid {
+	/**
+	 * The intervals of the pyramid, from the smallest one
+	 */
+	private static final CandleInterval[] intervals = CandleInterval.values();
+
+	/**
+	 * The aggregator of the ticks into the smallest interval
+	 */
+	private final CandleAggregator baseAggregator = new CandleAggregator(intervals[0].getMillis());
+
+	/**
+	 * The candle lists of each interval, the first one is the list of {@link CandlePyramid#baseAggregator}
+	 */
+	private final List<List<Candle>> levelList = new ArrayList<List<Candle>>();
+
+	/**
+	 * The index, on the previous interval, of the first candle of the open candle of each interval
+	 */
+	private final int[] openCandleStartIndex = new int[intervals.length];
+
+	/**
+	 * The range index of the highs and lows of each interval
+	 */
+	private final CandleRangeIndex[] rangeIndexes = new CandleRangeIndex[intervals.length];
+
+	/**
+	 * The indicators of each interval, they can be added by any thread
+	 */
+	private final List<List<CandleIndicator>> indicatorLists = new ArrayList<List<CandleIndicator>>();
+
+	/**
+	 * Empty constructor
+	 */
+	public CandlePyramid() {
+		levelList.add(baseAggregator.getCandleList());
+		for (int level = 1; level < intervals.length; level++) {
+			levelList.add(new ArrayList<Candle>());
+		}
+		for (int level = 0; level < intervals.length; level++) {
+			rangeIndexes[level] = new CandleRangeIndex();
+			indicatorLists.add(new CopyOnWriteArrayList<CandleIndicator>());
+		}
+	}
+
+	/**
+	 * Gets the tick source being aggregated
+	 * @return the tick source being aggregated
+	 */
+	public TickSource getTickSource() {
+		return baseAggregator.getTickSource();
+	}
+
+	/**
+	 * Sets the tick source to be aggregated
+	 * It also resets the candles already built
+	 * @param tickSource the {@link TickSource} to be aggregated
+	 */
+	public void setTickSource(TickSource tickSource) {
+		baseAggregator.setTickSource(tickSource);
+		reset();
+	}
+
+	/**
+	 * Discards the candles built so far
+	 */
+	public void reset() {
+		baseAggregator.reset();
+		for (int level = 1; level < intervals.length; level++) {
+			levelList.get(level).clear();
+			openCandleStartIndex[level] = 0;
+		}
+		for (int level = 0; level < intervals.length; level++) {
+			rangeIndexes[level].clear();
+			clearIndicators(level);
+		}
+	}
+
+	/**
+	 * Aggregates the ticks with timestamp up to the given time limit and rolls up every interval
+	 * @param timeLimit the time limit of the ticks to be aggregated
+	 * @return the number of ticks aggregated by this call
+	 */
+	public long aggregateUntil(long timeLimit) {
+		long lastCursor = baseAggregator.getTickCursor();
+		long numTicks = baseAggregator.aggregateUntil(timeLimit);
+		if (baseAggregator.getTickCursor() < lastCursor) {
+			// the base aggregation was rewound
+			for (int level = 1; level < intervals.length; level++) {
+				rewind(level);
+			}
+		}
+
+		if (numTicks > 0 || baseAggregator.getTickCursor() != lastCursor) {
+			for (int level = 1; level < intervals.length; level++) {
+				rollUp(level);
+			}
+			for (int level = 0; level < intervals.length; level++) {
+				rangeIndexes[level].sync(levelList.get(level));
+			}
+		}
+		// also when nothing changed, so an indicator added while paused catches up
+		for (int level = 0; level < intervals.length; level++) {
+			for (CandleIndicator indicator : indicatorLists.get(level)) {
+				indicator.sync(levelList.get(level));
+			}
+		}
+		return numTicks;
+	}
+
+	/**
+	 * Discards the values of the indicators of an interval
+	 * @param level the index of the interval in {@link CandlePyramid#intervals}
+	 */
+	private void clearIndicators(int level) {
+		for (CandleIndicator indicator : indicatorLists.get(level)) {
+			indicator.clear();
+		}
+	}
+
+	/**
+	 * Drops the candles of an interval after the one of the last candle of the previous interval
+	 * That candle becomes the open candle again and is rebuilt by the next roll up
+	 * @param level the index of the interval in {@link CandlePyramid#intervals}
+	 */
+	private void rewind(int level) {
+		List<Candle> lowerList = levelList.get(level - 1);
+		List<Candle> candleList = levelList.get(level);
+		if (lowerList.isEmpty()) {
+			candleList.clear();
+			openCandleStartIndex[level] = 0;
+			return;
+		}
+		if (candleList.isEmpty()) {
+			return;
+		}
+
+		int index = CandleAggregator.getCandleIndexAt(candleList, lowerList.get(lowerList.size() - 1).initDate);
+		candleList.subList(index + 1, candleList.size()).clear();
+
+		// the first candle of the previous interval within the open candle
+		long openCandleTime = candleList.get(index).initDate;
+		int startIndex = CandleAggregator.getCandleIndexAt(lowerList, openCandleTime);
+		if (lowerList.get(startIndex).initDate < openCandleTime) {
+			startIndex++;
+		}
+		openCandleStartIndex[level] = startIndex;
+	}
+
+	/**
+	 * Rolls up the candles of the previous interval into the candles of an interval
+	 * The open candle is rebuilt from its first candle on the previous interval,
+	 * the candles closed before it are never touched again
+	 * @param level the index of the interval in {@link CandlePyramid#intervals}
+	 */
+	private void rollUp(int level) {
+		List<Candle> lowerList = levelList.get(level - 1);
+		List<Candle> candleList = levelList.get(level);
+		long intervalCandle = intervals[level].getMillis();
+
+		int startIndex = openCandleStartIndex[level];
+		if (!candleList.isEmpty()) {
+			// the open candle is rebuilt
+			candleList.remove(candleList.size() - 1);
+		}
+
+		Candle openCandle = null;
+		for (int i = startIndex; i < lowerList.size(); i++) {
+			Candle lowerCandle = lowerList.get(i);
+			long timeCandle = lowerCandle.initDate - lowerCandle.initDate % intervalCandle;
+			if (openCandle == null || openCandle.initDate != timeCandle) {
+				openCandle = new Candle();
+				openCandle.initDate = timeCandle;
+				openCandle.finalDate = timeCandle + intervalCandle;
+				candleList.add(openCandle);
+				openCandleStartIndex[level] = i;
+			}
+			openCandle.mergeCandle(lowerCandle);
+		}
+	}
+
+	/**
+	 * Gets the number of ticks aggregated so far
+	 * @return the number of ticks aggregated so far
+	 */
+	public long getTickCursor() {
+		return baseAggregator.getTickCursor();
+	}
+
+	/**
+	 * Gets the candles built so far of an interval, the last one is the open candle
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @return the candles built so far of the interval
+	 */
+	public List<Candle> getCandleList(CandleInterval candleInterval) {
+		return levelList.get(candleInterval.ordinal());
+	}
+
+	/**
+	 * Gets the range index of the highs and lows of the candles of an interval
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @return the {@link CandleRangeIndex} of the candles of the interval
+	 */
+	public CandleRangeIndex getCandleRangeIndex(CandleInterval candleInterval) {
+		return rangeIndexes[candleInterval.ordinal()];
+	}
+
+	/**
+	 * Adds an indicator to the candles of an interval
+	 * It catches up with the candles already built on the next aggregation, then follows the new ones in O(1)
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param indicator the {@link CandleIndicator} to add, not shared with another interval
+	 */
+	public void addIndicator(CandleInterval candleInterval, CandleIndicator indicator) {
+		indicatorLists.get(candleInterval.ordinal()).add(indicator);
+	}
+
+	/**
+	 * Removes an indicator of the candles of an interval
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param indicator the {@link CandleIndicator} to remove
+	 */
+	public void removeIndicator(CandleInterval candleInterval, CandleIndicator indicator) {
+		indicatorLists.get(candleInterval.ordinal()).remove(indicator);
+	}
+
+	/**
+	 * Gets the indicators of the candles of an interval
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @return the indicators of the interval
+	 */
+	public List<CandleIndicator> getIndicators(CandleInterval candleInterval) {
+		return indicatorLists.get(candleInterval.ordinal());
+	}
+
+	/**
+	 * Gets the index of the last candle of an interval starting at or before the given time
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param time the time to search
+	 * @return the index of the candle or 0 if the time is before the first candle
+	 */
+	public int getCandleIndexAt(CandleInterval candleInterval, long time) {
+		return CandleAggregator.getCandleIndexAt(getCandleList(candleInterval), time);
+	}
+}
\ No newline at end of file
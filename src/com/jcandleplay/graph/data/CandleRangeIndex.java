@@ -0,0 +1,204 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class answers the highest high and the lowest low of any range of a candle list in O(log n)
+ * It is a segment tree over the highs and the lows, kept up to date as the candles are appended
+ * and as the open candle changes, so the y scale of a window never scans its candles.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class CandleRangeIndex {
+	/**
+	 * The number of leaves of the trees, a power of two
+	 */
+	private int capacity;
+
+	/**
+	 * The tree of the highs, the leaves start at {@link CandleRangeIndex#capacity}
+	 */
+	private double[] highTree;
+
+	/**
+	 * The tree of the lows, the leaves start at {@link CandleRangeIndex#capacity}
+	 */
+	private double[] lowTree;
+
+	/**
+	 * The number of candles indexed
+	 */
+	private int size = 0;
+
+	/**
+	 * Empty constructor
+	 */
+	public CandleRangeIndex() {
+		this(1024);
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param initialCapacity the number of candles indexed before growing
+	 */
+	public CandleRangeIndex(int initialCapacity) {
+		capacity = Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1;
+		highTree = new double[capacity * 2];
+		lowTree = new double[capacity * 2];
+		Arrays.fill(highTree, Double.NEGATIVE_INFINITY);
+		Arrays.fill(lowTree, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Adds a candle at the end of the index
+	 * @param high the high of the candle
+	 * @param low the low of the candle
+	 */
+	public void add(double high, double low) {
+		if (size == capacity) {
+			grow();
+		}
+		set(size++, high, low);
+	}
+
+	/**
+	 * Changes the values of an indexed candle, like the open candle
+	 * @param index the index of the candle
+	 * @param high the high of the candle
+	 * @param low the low of the candle
+	 */
+	public void set(int index, double high, double low) {
+		int node = index + capacity;
+		highTree[node] = high;
+		lowTree[node] = low;
+		for (node >>>= 1; node > 0; node >>>= 1) {
+			highTree[node] = Math.max(highTree[2 * node], highTree[2 * node + 1]);
+			lowTree[node] = Math.min(lowTree[2 * node], lowTree[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * Removes the candles from an index on
+	 * @param newSize the number of candles to keep
+	 */
+	public void truncate(int newSize) {
+		while (size > newSize) {
+			set(--size, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * Removes all the candles
+	 */
+	public void clear() {
+		Arrays.fill(highTree, Double.NEGATIVE_INFINITY);
+		Arrays.fill(lowTree, Double.POSITIVE_INFINITY);
+		size = 0;
+	}
+
+	/**
+	 * Makes the index match a candle list that only changed from its last indexed candle on
+	 * The last indexed candle may have been the open candle, so it is indexed again
+	 * @param candleList the indexed candle list
+	 */
+	public void sync(List<Candle> candleList) {
+		int listSize = candleList.size();
+		truncate(Math.max(Math.min(size, listSize) - 1, 0));
+		for (int index = size; index < listSize; index++) {
+			Candle candle = candleList.get(index);
+			add(candle.high, candle.low);
+		}
+	}
+
+	/**
+	 * Gets the number of candles indexed
+	 * @return the number of candles indexed
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the highest high of a range of candles
+	 * @param fromIndex the index of the first candle, inclusive
+	 * @param toIndex the index of the last candle, exclusive
+	 * @return the highest high, or negative infinity if the range is empty
+	 */
+	public double getHigh(int fromIndex, int toIndex) {
+		double high = Double.NEGATIVE_INFINITY;
+		for (int left = fromIndex + capacity, right = toIndex + capacity; left < right; left >>>= 1, right >>>= 1) {
+			if ((left & 1) == 1) {
+				high = Math.max(high, highTree[left++]);
+			}
+			if ((right & 1) == 1) {
+				high = Math.max(high, highTree[--right]);
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Gets the lowest low of a range of candles
+	 * @param fromIndex the index of the first candle, inclusive
+	 * @param toIndex the index of the last candle, exclusive
+	 * @return the lowest low, or positive infinity if the range is empty
+	 */
+	public double getLow(int fromIndex, int toIndex) {
+		double low = Double.POSITIVE_INFINITY;
+		for (int left = fromIndex + capacity, right = toIndex + capacity; left < right; left >>>= 1, right >>>= 1) {
+			if ((left & 1) == 1) {
+				low = Math.min(low, lowTree[left++]);
+			}
+			if ((right & 1) == 1) {
+				low = Math.min(low, lowTree[--right]);
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Doubles the number of leaves, rebuilding the inner nodes
+	 */
+	private void grow() {
+		int newCapacity = capacity * 2;
+		double[] newHighTree = new double[newCapacity * 2];
+		double[] newLowTree = new double[newCapacity * 2];
+		Arrays.fill(newHighTree, Double.NEGATIVE_INFINITY);
+		Arrays.fill(newLowTree, Double.POSITIVE_INFINITY);
+		System.arraycopy(highTree, capacity, newHighTree, newCapacity, capacity);
+		System.arraycopy(lowTree, capacity, newLowTree, newCapacity, capacity);
+		for (int node = newCapacity - 1; node > 0; node--) {
+			newHighTree[node] = Math.max(newHighTree[2 * node], newHighTree[2 * node + 1]);
+			newLowTree[node] = Math.min(newLowTree[2 * node], newLowTree[2 * node + 1]);
+		}
+		capacity = newCapacity;
+		highTree = newHighTree;
+		lowTree = newLowTree;
+	}
+}
\ No newline at end of file
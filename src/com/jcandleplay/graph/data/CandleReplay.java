@@ -0,0 +1,1124 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jcandleplay.graph.PlayThreadStatus;
+
+/**
+ * This class is the replay of ticks into candlesticks, without any graphic component
+ * It plays a {@link TickSource} in real time or accelerated, aggregates the played ticks
+ * and emits the candles of the current window to its {@link CandleReplayListener}s.
+ * {@link CandlePlay} is one of its consumers, and it can run on a server without display.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class CandleReplay {
+	/**
+	 * The number of candles of the window of emitted candles, in candles of the current interval
+	 */
+	private static final int WINDOW_CANDLES = 120;
+
+	/**
+	 * The time between two frames of the play thread, in milliseconds of its clock
+	 */
+	public static final long FRAME_MILLIS = 100;
+
+	/**
+	 * The time between two checks for new ticks of a play that played all of them, in milliseconds
+	 */
+	private static final long TICK_POLL_MILLIS = 500;
+
+	/**
+	 * The value of {@link CandleReplay#pendingSeekTime} without a seek
+	 */
+	private static final long NO_SEEK = Long.MIN_VALUE;
+
+	/**
+	 * The data tick source
+	 */
+	private volatile TickSource tickSource;
+
+	/**
+	 * The velocity the time is playing
+	 * 1 x is the real time acceleration
+	 */
+	private volatile double timeAcceleration = 1;
+
+	/**
+	 * The clock that paces the replay
+	 */
+	private volatile ReplayClock replayClock = new SystemReplayClock();
+
+	/**
+	 * The position of the window of emitted candles, between 0, the first candles, and 1, the last played candles
+	 */
+	private volatile double windowOffset = 0;
+
+	/**
+	 * The scheduler running the frames of the replay
+	 */
+	private volatile ReplayScheduler replayScheduler = ReplayScheduler.getDefault();
+
+	/**
+	 * The task playing the frames, null if the replay is not playing
+	 */
+	private PlayTask playTask;
+
+	/**
+	 * The lock of the frames, the scheduler has several threads and a cancelled frame can still be running
+	 * when the next play starts, so the frames never step the candles at the same time
+	 */
+	private final Object frameLock = new Object();
+
+	/**
+	 * The play thread status
+	 */
+	private volatile PlayThreadStatus playThreadStatus = PlayThreadStatus.PLAYING;
+
+	/**
+	 * The internal variable to handle accumulated time since the initial time
+	 */
+	private long internalAnimatedAccumTime = 0;
+
+	/**
+	 * The fraction of a millisecond played by the last frame and not yet accumulated
+	 * A slow acceleration plays less than a millisecond per frame, it is accumulated over the frames
+	 */
+	private double playedTimeRemainder = 0;
+
+	/**
+	 * The time of the first tick played
+	 */
+	private long initialTime = 0;
+
+	/**
+	 * The time to move the play to on the next step, set by any thread and taken by the play thread
+	 */
+	private final AtomicLong pendingSeekTime = new AtomicLong(NO_SEEK);
+
+	/**
+	 * The number of candles to step on the next step, negative to step back, set by any thread and taken by the play thread
+	 */
+	private final AtomicInteger pendingCandleSteps = new AtomicInteger(0);
+
+	/**
+	 * If a frame must be played even without new ticks to play, like after a change of the interval or of the window
+	 */
+	private final AtomicBoolean frameRequested = new AtomicBoolean(true);
+
+	/**
+	 * The interval of the candle
+	 * It initializes with one minute
+	 */
+	private volatile CandleInterval candleInterval = CandleInterval.MINUTE_1;
+
+	/**
+	 * The incremental aggregator of the played ticks into the candles of every interval
+	 */
+	private final CandlePyramid candlePyramid = new CandlePyramid();
+
+	/**
+	 * The live feed of ticks, drained by the play thread into {@link CandleReplay#liveTickStore}
+	 */
+	private volatile TickRingBuffer liveFeed;
+
+	/**
+	 * The store of the ticks of the live feed, it is the tick source while the feed is open
+	 */
+	private TickStore liveTickStore;
+
+	/**
+	 * The highest high of the candles of the last step
+	 */
+	private double windowHighValue = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * The lowest low of the candles of the last step
+	 */
+	private double windowLowValue = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The range of the closed candles of the window while it follows the open candle
+	 */
+	private final SlidingCandleRange slidingCandleRange = new SlidingCandleRange();
+
+	/**
+	 * The first candle of the window of {@link CandleReplay#slidingCandleRange}
+	 */
+	private int slidingFirstCandle = 0;
+
+	/**
+	 * The interval of the candles of {@link CandleReplay#slidingCandleRange}
+	 */
+	private CandleInterval slidingCandleInterval;
+
+	/**
+	 * If {@link CandleReplay#slidingCandleRange} must be rebuilt because the candles were rebuilt
+	 */
+	private volatile boolean slidingCandleRangeReset = true;
+
+	/**
+	 * The listeners of the emitted candles
+	 */
+	private final List<CandleReplayListener> listenerList = new CopyOnWriteArrayList<CandleReplayListener>();
+
+	/**
+	 * The frame of the last step, published whole to the readers of other threads
+	 */
+	private volatile CandleFrame candleFrame = CandleFrame.EMPTY;
+
+	/**
+	 * The tick source of {@link CandleReplay#candleFrame}
+	 */
+	private TickSource frameTickSource;
+
+	/**
+	 * The number of ticks played for {@link CandleReplay#candleFrame}
+	 */
+	private long frameTickCursor = -1;
+
+	/**
+	 * The interval of {@link CandleReplay#candleFrame}
+	 */
+	private CandleInterval frameCandleInterval;
+
+	/**
+	 * The window offset of {@link CandleReplay#candleFrame}
+	 */
+	private double frameWindowOffset = Double.NaN;
+
+	/**
+	 * Empty constructor
+	 */
+	public CandleReplay() {
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param tickSource the data tick source to be played
+	 */
+	public CandleReplay(TickSource tickSource) {
+		this.tickSource = tickSource;
+	}
+
+	/**
+	 * Adds a listener of the emitted candles
+	 * @param listener the {@link CandleReplayListener} to add
+	 */
+	public void addCandleReplayListener(CandleReplayListener listener) {
+		listenerList.add(listener);
+	}
+
+	/**
+	 * Removes a listener of the emitted candles
+	 * @param listener the {@link CandleReplayListener} to remove
+	 */
+	public void removeCandleReplayListener(CandleReplayListener listener) {
+		listenerList.remove(listener);
+	}
+
+	/**
+	 * Sets the interval of the candles
+	 * The candles of every interval are already built, so switching takes effect on the next step
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 */
+	public void setCandleInterval(CandleInterval candleInterval) {
+		this.candleInterval = candleInterval;
+		requestFrame();
+	}
+
+	/**
+	 * Gets the interval of the candles
+	 * @return the {@link CandleInterval} of the candles
+	 */
+	public CandleInterval getCandleInterval() {
+		return candleInterval;
+	}
+
+	/**
+	 * Sets the time acceleration of the replay
+	 * @param timeAcceleration the time acceleration of the replay
+	 */
+	public void setTimeAcceleration(double timeAcceleration) {
+		this.timeAcceleration = timeAcceleration;
+	}
+
+	/**
+	 * Gets the time acceleration of the replay
+	 * @return the time acceleration of the replay
+	 */
+	public double getTimeAcceleration() {
+		return timeAcceleration;
+	}
+
+	/**
+	 * Sets the clock that paces the replay, it must be set before playing
+	 * A {@link SimulatedReplayClock} plays as fast as possible and always emits the same candles
+	 * @param replayClock the {@link ReplayClock} of the replay
+	 */
+	public void setReplayClock(ReplayClock replayClock) {
+		this.replayClock = replayClock;
+	}
+
+	/**
+	 * Gets the clock that paces the replay
+	 * @return the {@link ReplayClock} of the replay
+	 */
+	public ReplayClock getReplayClock() {
+		return replayClock;
+	}
+
+	/**
+	 * Sets the position of the window of emitted candles, over the candles of the current interval
+	 * @param windowOffset value between 0, the first candles, and 1, the last played candles
+	 */
+	public void setWindowOffset(double windowOffset) {
+		this.windowOffset = windowOffset;
+		requestFrame();
+	}
+
+	/**
+	 * Gets the position of the window of emitted candles
+	 * @return value between 0, the first ticks, and 1, the last played ticks
+	 */
+	public double getWindowOffset() {
+		return windowOffset;
+	}
+
+	/**
+	 * Moves the play position to a point of the tick source
+	 * The seek is taken by the next step, which also plays it while paused.
+	 * Going back only aggregates again the ticks of the open candles at the new position,
+	 * see {@link CandlePyramid}, so scrubbing costs about the same in both directions
+	 * @param timePosition value between 0, the first tick, and 1, the last tick
+	 */
+	public void setTimePosition(double timePosition) {
+		TickSource tickSource = this.tickSource;
+		if (tickSource != null && tickSource.size() > 0) {
+			long lastTick = tickSource.getTimestamp(tickSource.size() - 1);
+			long firstTick = tickSource.getTimestamp(0);
+			pendingSeekTime.set(firstTick + (long)((lastTick - firstTick) * timePosition));
+			wakePlay();
+		}
+	}
+
+	/**
+	 * Moves the play position to the end of the next candle of the current interval
+	 * If the open candle is not complete yet, it is completed. It is played even while paused
+	 */
+	public void stepForward() {
+		pendingCandleSteps.incrementAndGet();
+		wakePlay();
+	}
+
+	/**
+	 * Moves the play position back to the end of the candle before the open candle of the current interval
+	 * It is played even while paused
+	 */
+	public void stepBack() {
+		pendingCandleSteps.decrementAndGet();
+		wakePlay();
+	}
+
+	/**
+	 * Sets the scheduler running the frames of the replay, it must be set before playing
+	 * @param replayScheduler the {@link ReplayScheduler} of the replay
+	 */
+	public void setReplayScheduler(ReplayScheduler replayScheduler) {
+		this.replayScheduler = replayScheduler;
+	}
+
+	/**
+	 * Gets the scheduler running the frames of the replay
+	 * @return the {@link ReplayScheduler} of the replay
+	 */
+	public ReplayScheduler getReplayScheduler() {
+		return replayScheduler;
+	}
+
+	/**
+	 * It starts playing, each frame steps the replay by the time elapsed on its clock
+	 * The frames run on the {@link ReplayScheduler} instead of a thread of their own
+	 */
+	public synchronized void play() {
+		if (playTask != null) {
+			playTask.cancel();
+		}
+		playTask = new PlayTask(replayClock, replayScheduler);
+		playTask.schedule(0);
+	}
+
+	/**
+	 * It stops playing and cancels the next frame
+	 * The replay can be played again later
+	 */
+	public synchronized void stop() {
+		if (playTask != null) {
+			playTask.cancel();
+			playTask = null;
+		}
+	}
+
+	/**
+	 * Plays the whole tick source forward on the calling thread, without scheduling the frames, whatever the play status
+	 * With a {@link SimulatedReplayClock} it runs at full speed and every run emits the same candles
+	 */
+	public void playToEnd() {
+		if (timeAcceleration <= 0) {
+			throw new IllegalStateException("The replay does not advance with acceleration " + timeAcceleration);
+		}
+		ReplayClock replayClock = this.replayClock;
+		long lastTime = replayClock.currentTimeMillis();
+		TickSource tickSource;
+		while ((tickSource = this.tickSource) != null && candlePyramid.getTickCursor() < tickSource.size()) {
+			lastTime = playFrame(replayClock, lastTime, PlayThreadStatus.PLAYING);
+			long waitTime = replayClock.waitTime(FRAME_MILLIS);
+			if (waitTime > 0) {
+				try {
+					Thread.sleep(waitTime);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plays one frame, stepping the replay by the time elapsed on the clock, back in time while playing backward
+	 * @param replayClock the {@link ReplayClock} pacing the frames
+	 * @param lastTime the clock time of the last frame
+	 * @param playThreadStatus the {@link PlayThreadStatus} of the frame
+	 * @return the clock time of this frame
+	 */
+	private long playFrame(ReplayClock replayClock, long lastTime, PlayThreadStatus playThreadStatus) {
+		synchronized (frameLock) {
+			long currTime = replayClock.currentTimeMillis();
+			long diffFromLastTime = 0;
+			if (playThreadStatus == PlayThreadStatus.PLAYING || playThreadStatus == PlayThreadStatus.PLAYING_BACKWARD) {
+				// a frame played while paused does not move the time
+				double playedTime = (currTime - lastTime) * timeAcceleration + playedTimeRemainder;
+				diffFromLastTime = (long) playedTime;
+				playedTimeRemainder = playedTime - diffFromLastTime;
+			}
+			step(playThreadStatus == PlayThreadStatus.PLAYING_BACKWARD ? -diffFromLastTime : diffFromLastTime);
+			return currTime;
+		}
+	}
+
+	/**
+	 * Sets the current play thread status
+	 * @param playThreadStatus the {@link PlayThreadStatus}
+	 */
+	public void setPlayThreadStatus(PlayThreadStatus playThreadStatus) {
+		this.playThreadStatus = playThreadStatus;
+		if (playThreadStatus == PlayThreadStatus.INACTIVATED) {
+			stop();
+		} else {
+			wakePlay();
+		}
+	}
+
+	/**
+	 * Tells the replay that ticks were added to its tick source
+	 * A play waiting for ticks only checks the size of its tick source every {@link CandleReplay#TICK_POLL_MILLIS},
+	 * this wakes it at once
+	 */
+	public void notifyTicksAdded() {
+		wakePlay();
+	}
+
+	/**
+	 * Asks the play for a frame, also while paused or with every tick played
+	 */
+	private void requestFrame() {
+		frameRequested.set(true);
+		wakePlay();
+	}
+
+	/**
+	 * Wakes the play if it is parked
+	 */
+	private synchronized void wakePlay() {
+		if (playTask != null) {
+			playTask.wake();
+		}
+	}
+
+	/**
+	 * Checks if the play can play a frame
+	 * It can not while paused or without ticks, nor while playing backward at the first tick,
+	 * nor after every tick was played, until ticks are added.
+	 * A live feed is drained on every frame while it is open, also while paused
+	 * @return true if the play can play a frame
+	 */
+	private boolean canPlayFrame() {
+		if (liveFeed != null) {
+			// the buffer of the feed must not overflow, a paused frame drains it without moving the time
+			return playThreadStatus != PlayThreadStatus.INACTIVATED;
+		}
+		TickSource tickSource = this.tickSource;
+		boolean hasTicks = tickSource != null && tickSource.size() > 0;
+		if (hasTicks && (pendingSeekTime.get() != NO_SEEK || pendingCandleSteps.get() != 0 || frameRequested.get())) {
+			// a seek, a step or a change of the view is played even while paused
+			return playThreadStatus != PlayThreadStatus.INACTIVATED;
+		}
+		if (playThreadStatus == PlayThreadStatus.PLAYING_BACKWARD) {
+			return hasTicks && internalAnimatedAccumTime > 0;
+		}
+		if (playThreadStatus != PlayThreadStatus.PLAYING) {
+			return false;
+		}
+		// the play waits for new ticks once it played all of them
+		return hasTicks && (candlePyramid.getTickSource() != tickSource || candlePyramid.getTickCursor() < tickSource.size());
+	}
+
+	/**
+	 * Gets the current play thread status
+	 * @return the {@link PlayThreadStatus}
+	 */
+	public PlayThreadStatus getPlayThreadStatus() {
+		return playThreadStatus;
+	}
+
+	/**
+	 * Steps the replay and emits the candles of the window to the listeners
+	 * It is called by the play thread, or directly by a batch replay without play thread.
+	 * A step that changed nothing emits nothing, so an idle replay does not repaint its listeners.
+	 * The steps are serialized, whatever thread calls them
+	 * @param diffFromLastTime the time played since the last step
+	 * @return the {@link CandleFrame} of the window
+	 */
+	public CandleFrame step(long diffFromLastTime) {
+		synchronized (frameLock) {
+			CandleFrame candleFrame = buildCandleFrame(diffFromLastTime);
+			if (candleFrame == this.candleFrame) {
+				return candleFrame;
+			}
+			this.candleFrame = candleFrame;
+			for (CandleReplayListener listener : listenerList) {
+				listener.candlesUpdated(this, candleFrame);
+			}
+			return candleFrame;
+		}
+	}
+
+	/**
+	 * Gets the frame of the last step
+	 * It can be read by any thread, the frame is immutable
+	 * @return the {@link CandleFrame} of the last step
+	 */
+	public CandleFrame getCandleFrame() {
+		return candleFrame;
+	}
+
+	/**
+	 * Builds the frame of the candles of the window
+	 * Only the ticks played since the last step are aggregated by {@link CandleReplay#candlePyramid}.
+	 * The frame only depends on the ticks played, the interval and the window,
+	 * so the last frame is returned as it is when none of them changed
+	 *
+	 * @param diffFromLastTime the time played since the last step
+	 * @return the {@link CandleFrame} of the window
+	 */
+	private CandleFrame buildCandleFrame(long diffFromLastTime) {
+		TickSource tickSource = this.tickSource;
+		if (tickSource == null || tickSource.size() == 0) {
+			return CandleFrame.EMPTY;
+		}
+		if (candlePyramid.getTickSource() != tickSource) {
+			// a new tick source is played from its first tick
+			candlePyramid.setTickSource(tickSource);
+			initialTime = tickSource.getTimestamp(0);
+			internalAnimatedAccumTime = 0;
+		}
+		boolean frameRequested = this.frameRequested.getAndSet(false);
+		long seekTime = pendingSeekTime.getAndSet(NO_SEEK);
+		int candleSteps = pendingCandleSteps.getAndSet(0);
+		if (seekTime != NO_SEEK) {
+			initialTime = tickSource.getTimestamp(0);
+			internalAnimatedAccumTime = seekTime - initialTime;
+			slidingCandleRangeReset = true;
+		} else if (candleSteps == 0) {
+			// playing backward stops at the first tick, and playing forward at the last one
+			internalAnimatedAccumTime = Math.min(Math.max(internalAnimatedAccumTime + diffFromLastTime, 0), getLastAccumTime(tickSource));
+		}
+
+		CandleInterval candleInterval = this.candleInterval;
+		candlePyramid.aggregateUntil(initialTime + internalAnimatedAccumTime);
+		if (candleSteps != 0) {
+			stepCandles(tickSource, candleInterval, candleSteps);
+		}
+
+		double windowOffset = this.windowOffset;
+		long tickCursor = candlePyramid.getTickCursor();
+		if (!frameRequested && seekTime == NO_SEEK && candleSteps == 0 && tickSource == frameTickSource
+				&& tickCursor == frameTickCursor && candleInterval == frameCandleInterval && windowOffset == frameWindowOffset) {
+			return candleFrame;
+		}
+		frameTickSource = tickSource;
+		frameTickCursor = tickCursor;
+		frameCandleInterval = candleInterval;
+		frameWindowOffset = windowOffset;
+
+		long intervalCandle = candleInterval.getMillis();
+		List<Candle> aggregatedList = candlePyramid.getCandleList(candleInterval);
+		if (aggregatedList.isEmpty()) {
+			return CandleFrame.EMPTY;
+		}
+
+		int lastCandle = aggregatedList.size() - 1;
+		{ // updates the current window by its offset, the same number of candles for every interval
+			int numCandles = aggregatedList.size() - WINDOW_CANDLES;
+			if (numCandles > 0) {
+				lastCandle = WINDOW_CANDLES - 1 + (int) (numCandles * windowOffset);
+			}
+		}
+
+		// the window goes back from its last candle, the flat candles filling the gaps count as candles of the window
+		int firstCandle = lastCandle;
+		int windowCandles = 1;
+		int leadingFillingCount = 0;
+		while (firstCandle > 0 && windowCandles < WINDOW_CANDLES) {
+			long fillingCount = getFillingCount(aggregatedList.get(firstCandle - 1), aggregatedList.get(firstCandle), intervalCandle);
+			if (windowCandles + fillingCount >= WINDOW_CANDLES) {
+				// the window starts within the gap
+				leadingFillingCount = WINDOW_CANDLES - windowCandles;
+				break;
+			}
+			windowCandles += (int) fillingCount + 1;
+			firstCandle--;
+		}
+
+		updateWindowRange(candleInterval, aggregatedList, firstCandle, lastCandle);
+
+		List<Candle> candleList = new ArrayList<Candle>(windowCandles + leadingFillingCount);
+		Candle previousCandle = null;
+		if (leadingFillingCount > 0) {
+			previousCandle = aggregatedList.get(firstCandle - 1);
+			windowHighValue = Math.max(windowHighValue, previousCandle.close);
+			windowLowValue = Math.min(windowLowValue, previousCandle.close);
+		}
+		for (int i = firstCandle; i <= lastCandle; i++) {
+			Candle candle = aggregatedList.get(i);
+			if (i == aggregatedList.size() - 1) {
+				// the open candle keeps changing, the snapshot gets a copy
+				candle = candle.getCopy();
+			}
+			if (previousCandle != null) {
+				long fromTime = previousCandle.finalDate;
+				if (i == firstCandle) {
+					// only the end of the gap before the first candle is within the window
+					fromTime += (getFillingCount(previousCandle, candle, intervalCandle) - leadingFillingCount) * intervalCandle;
+				}
+				// fills the intervals without ticks with the last close
+				for (long time = fromTime; time < candle.initDate; time += intervalCandle) {
+					Candle newCandle = new Candle();
+					newCandle.open = previousCandle.close;
+					newCandle.high = previousCandle.close;
+					newCandle.low = previousCandle.close;
+					newCandle.close = previousCandle.close;
+					newCandle.initDate = time;
+					newCandle.finalDate = time + intervalCandle;
+					candleList.add(newCandle);
+				}
+			}
+			candleList.add(candle);
+			previousCandle = candle;
+		}
+
+		double[][] indicatorLines = getIndicatorLines(candleInterval, aggregatedList, firstCandle, candleList);
+		return new CandleFrame(candleList, windowLowValue, windowHighValue, indicatorLines);
+	}
+
+	/**
+	 * Gets the number of flat candles filling the gap between two candles
+	 * @param previousCandle the candle before the gap
+	 * @param candle the candle after the gap
+	 * @param intervalCandle the interval of the candles in milliseconds
+	 * @return the number of intervals without ticks between the candles
+	 */
+	private static long getFillingCount(Candle previousCandle, Candle candle, long intervalCandle) {
+		long gap = candle.initDate - previousCandle.finalDate;
+		return gap <= 0 ? 0 : (gap + intervalCandle - 1) / intervalCandle;
+	}
+
+	/**
+	 * Moves the play position by whole candles of an interval
+	 * Each step goes to the end of a candle found from the candles of {@link CandleReplay#candlePyramid},
+	 * a step back rewinds the aggregation from its checkpoints,
+	 * so the cost of a step does not depend on the length of the history played
+	 * @param tickSource the {@link TickSource} being played
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param candleSteps the number of candles to step, negative to step back
+	 */
+	private void stepCandles(TickSource tickSource, CandleInterval candleInterval, int candleSteps) {
+		long intervalCandle = candleInterval.getMillis();
+		List<Candle> aggregatedList = candlePyramid.getCandleList(candleInterval);
+		for (; candleSteps > 0; candleSteps--) {
+			long tickCursor = candlePyramid.getTickCursor();
+			if (tickCursor >= tickSource.size()) {
+				break;
+			}
+			// the end of the candle of the first tick not played yet
+			long timestamp = tickSource.getTimestamp(tickCursor);
+			moveTo(tickSource, timestamp - timestamp % intervalCandle + intervalCandle - 1);
+		}
+		for (; candleSteps < 0; candleSteps++) {
+			if (aggregatedList.size() < 2) {
+				break;
+			}
+			moveTo(tickSource, aggregatedList.get(aggregatedList.size() - 2).finalDate - 1);
+		}
+	}
+
+	/**
+	 * Moves the play position to a time and aggregates up to it
+	 * @param tickSource the {@link TickSource} being played
+	 * @param time the new time of the play
+	 */
+	private void moveTo(TickSource tickSource, long time) {
+		internalAnimatedAccumTime = Math.min(time - initialTime, getLastAccumTime(tickSource));
+		candlePyramid.aggregateUntil(time);
+	}
+
+	/**
+	 * Gets the highest time the play can accumulate, the time of the last tick
+	 * A live feed keeps adding ticks, so its time is not limited.
+	 * Without a limit the time played past the end would have to be played back before any candle goes back
+	 * @param tickSource the {@link TickSource} being played
+	 * @return the time of the last tick since the initial time, or {@link Long#MAX_VALUE} for a live feed
+	 */
+	private long getLastAccumTime(TickSource tickSource) {
+		if (liveFeed != null) {
+			return Long.MAX_VALUE;
+		}
+		return tickSource.getTimestamp(tickSource.size() - 1) - initialTime;
+	}
+
+	/**
+	 * Gets the values of the indicators of an interval at the candles of the window
+	 * The flat candles filling the gaps keep the values of the candle before them
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param aggregatedList the candles of the interval
+	 * @param firstCandle the index of the first candle of the window
+	 * @param candleList the candles of the window
+	 * @return the values of each line of the indicators, by candle of the window
+	 */
+	private double[][] getIndicatorLines(CandleInterval candleInterval, List<Candle> aggregatedList, int firstCandle, List<Candle> candleList) {
+		List<CandleIndicator> indicatorList = candlePyramid.getIndicators(candleInterval);
+		if (indicatorList.isEmpty()) {
+			return new double[0][];
+		}
+
+		// the index of the candle of the interval of each candle of the window, the filling candles take the one before them
+		int[] aggregatedIndexes = new int[candleList.size()];
+		int aggregatedIndex = firstCandle;
+		for (int i = 0; i < aggregatedIndexes.length; i++) {
+			if (candleList.get(i).initDate == aggregatedList.get(aggregatedIndex).initDate) {
+				aggregatedIndex++;
+			}
+			aggregatedIndexes[i] = aggregatedIndex - 1;
+		}
+
+		List<double[]> lineList = new ArrayList<double[]>();
+		for (CandleIndicator indicator : indicatorList) {
+			if (indicator.size() != aggregatedList.size()) {
+				// added after the last aggregation
+				continue;
+			}
+			for (int line = 0; line < indicator.getLineCount(); line++) {
+				double[] values = new double[aggregatedIndexes.length];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = indicator.getValue(line, aggregatedIndexes[i]);
+				}
+				lineList.add(values);
+			}
+		}
+		return lineList.toArray(new double[lineList.size()][]);
+	}
+
+	/**
+	 * Gets the total volume of the ticks of a time range
+	 * The range is found by two searches, then the sum comes in O(1) from the prefix sums of the tick source
+	 * @param fromTime the start of the range, inclusive
+	 * @param toTime the end of the range, exclusive
+	 * @return the sum of the volumes of the ticks of the range
+	 */
+	public double getVolume(long fromTime, long toTime) {
+		TickSource tickSource = this.tickSource;
+		if (tickSource == null) {
+			return 0;
+		}
+		long size = tickSource.size();
+		long fromIndex = tickSource.indexAfter(fromTime - 1, 0, size);
+		return tickSource.getVolumeSum(fromIndex, tickSource.indexAfter(toTime - 1, fromIndex, size));
+	}
+
+	/**
+	 * Gets the total notional of the ticks of a time range, the sum of the value times the volume of each tick
+	 * @param fromTime the start of the range, inclusive
+	 * @param toTime the end of the range, exclusive
+	 * @return the sum of the notionals of the ticks of the range
+	 */
+	public double getNotional(long fromTime, long toTime) {
+		TickSource tickSource = this.tickSource;
+		if (tickSource == null) {
+			return 0;
+		}
+		long size = tickSource.size();
+		long fromIndex = tickSource.indexAfter(fromTime - 1, 0, size);
+		return tickSource.getNotionalSum(fromIndex, tickSource.indexAfter(toTime - 1, fromIndex, size));
+	}
+
+	/**
+	 * Gets the volume weighted average price of the ticks of a time range
+	 * @param fromTime the start of the range, inclusive
+	 * @param toTime the end of the range, exclusive
+	 * @return the notional divided by the volume of the range, {@link Double#NaN} if it has no volume
+	 */
+	public double getVwap(long fromTime, long toTime) {
+		TickSource tickSource = this.tickSource;
+		if (tickSource == null) {
+			return Double.NaN;
+		}
+		long size = tickSource.size();
+		long fromIndex = tickSource.indexAfter(fromTime - 1, 0, size);
+		long toIndex = tickSource.indexAfter(toTime - 1, fromIndex, size);
+		double volume = tickSource.getVolumeSum(fromIndex, toIndex);
+		return volume > 0 ? tickSource.getNotionalSum(fromIndex, toIndex) / volume : Double.NaN;
+	}
+
+	/**
+	 * Adds an indicator to the candles of an interval, its lines come with the frames of that interval
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param indicator the {@link CandleIndicator} to add, not shared with another interval
+	 */
+	public void addIndicator(CandleInterval candleInterval, CandleIndicator indicator) {
+		candlePyramid.addIndicator(candleInterval, indicator);
+		requestFrame();
+	}
+
+	/**
+	 * Removes an indicator of the candles of an interval
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param indicator the {@link CandleIndicator} to remove
+	 */
+	public void removeIndicator(CandleInterval candleInterval, CandleIndicator indicator) {
+		candlePyramid.removeIndicator(candleInterval, indicator);
+		requestFrame();
+	}
+
+	/**
+	 * Updates the highest high and the lowest low of the window
+	 * While the window follows the open candle it only slides forward, so its closed candles are kept
+	 * in {@link CandleReplay#slidingCandleRange}, otherwise the range index of the interval is queried.
+	 * The flat candles filling the gaps are at the close of a candle of the window, so they are within its range.
+	 * @param candleInterval the {@link CandleInterval} of the candles
+	 * @param aggregatedList the candles of the interval
+	 * @param firstCandle the index of the first candle of the window
+	 * @param lastCandle the index of the last candle of the window
+	 */
+	private void updateWindowRange(CandleInterval candleInterval, List<Candle> aggregatedList, int firstCandle, int lastCandle) {
+		int openCandle = aggregatedList.size() - 1;
+		if (lastCandle == openCandle) {
+			if (slidingCandleRangeReset || slidingCandleInterval != candleInterval
+					|| firstCandle < slidingFirstCandle || slidingCandleRange.getLastIndex() >= openCandle) {
+				slidingCandleRangeReset = false;
+				slidingCandleInterval = candleInterval;
+				slidingCandleRange.clear();
+			}
+			for (int i = Math.max(slidingCandleRange.getLastIndex() + 1, firstCandle); i < openCandle; i++) {
+				Candle candle = aggregatedList.get(i);
+				slidingCandleRange.add(i, candle.high, candle.low);
+			}
+			slidingCandleRange.removeBefore(firstCandle);
+			slidingFirstCandle = firstCandle;
+
+			Candle candle = aggregatedList.get(openCandle);
+			windowHighValue = Math.max(slidingCandleRange.getHigh(), candle.high);
+			windowLowValue = Math.min(slidingCandleRange.getLow(), candle.low);
+		} else {
+			CandleRangeIndex rangeIndex = candlePyramid.getCandleRangeIndex(candleInterval);
+			windowHighValue = rangeIndex.getHigh(firstCandle, lastCandle + 1);
+			windowLowValue = rangeIndex.getLow(firstCandle, lastCandle + 1);
+		}
+	}
+
+	/**
+	 * Gets the highest high of the candles of the last step
+	 * It is meant to be read by the listeners while they receive the candles
+	 * @return the highest high of the candles of the last step
+	 */
+	public double getWindowHighValue() {
+		return windowHighValue;
+	}
+
+	/**
+	 * Gets the lowest low of the candles of the last step
+	 * It is meant to be read by the listeners while they receive the candles
+	 * @return the lowest low of the candles of the last step
+	 */
+	public double getWindowLowValue() {
+		return windowLowValue;
+	}
+
+	/**
+	 * Opens a live feed of ticks with the default capacity
+	 * @return the {@link TickRingBuffer} where the feed thread appends the ticks
+	 */
+	public TickRingBuffer openLiveFeed() {
+		return openLiveFeed(TickRingBuffer.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Opens a live feed of ticks
+	 * The feed thread appends the ticks to the returned buffer without locks,
+	 * and the play thread drains them in batches into a new {@link TickStore} that becomes the tick source
+	 * @param capacity the number of ticks the feed buffers between two drains of the play thread
+	 * @return the {@link TickRingBuffer} where the feed thread appends the ticks
+	 */
+	public synchronized TickRingBuffer openLiveFeed(int capacity) {
+		TickRingBuffer liveFeed = new TickRingBuffer(capacity);
+		TickStore liveTickStore = new TickStore();
+		setTickSource(liveTickStore);
+		this.liveTickStore = liveTickStore;
+		this.liveFeed = liveFeed;
+		wakePlay();
+		return liveFeed;
+	}
+
+	/**
+	 * Moves the ticks of the live feed to its store, it is called by the play thread
+	 * It only synchronizes with the opening of a feed, never with the feed thread
+	 */
+	public synchronized void drainLiveFeed() {
+		TickRingBuffer liveFeed = this.liveFeed;
+		if (liveFeed != null) {
+			try {
+				liveFeed.drainTo(liveTickStore);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Gets the ticks of a candle from the current tick source
+	 * The candles keep only the index range of their ticks, so the ticks are created on demand
+	 * @param candle the {@link Candle} to drill down
+	 * @return a new list with the ticks of the candle
+	 */
+	public List<Tick> getTickList(Candle candle) {
+		TickSource tickSource = this.tickSource;
+		List<Tick> tickList = new ArrayList<Tick>();
+		for (long index = candle.initTickIndex; index < candle.finalTickIndex; index++) {
+			tickList.add(new Tick(tickSource.getValue(index), tickSource.getTimestamp(index), tickSource.getVolume(index)));
+		}
+		return tickList;
+	}
+
+	/**
+	 * Sets the current source of ticks to be played, like a {@link TickStore} or a {@link MappedTickFile}
+	 * The candles are rebuilt on the next step, which plays the new source from its first tick
+	 * @param tickSource the {@link TickSource} to be played
+	 */
+	public void setTickSource(TickSource tickSource) {
+		// a live feed stops feeding when the tick source is replaced
+		this.liveFeed = null;
+		// the seeks and the steps asked for belong to the previous source
+		pendingSeekTime.set(NO_SEEK);
+		pendingCandleSteps.set(0);
+		this.tickSource = tickSource;
+		this.slidingCandleRangeReset = true;
+		wakePlay();
+	}
+
+	/**
+	 * Gets the current source of ticks
+	 * @return the {@link TickSource} being played
+	 */
+	public TickSource getTickSource() {
+		return tickSource;
+	}
+
+	/**
+	 * The task of the frames of a play
+	 * Each frame schedules the next one, so a play never holds a thread while waiting
+	 */
+	private class PlayTask implements Runnable {
+		/**
+		 * The clock pacing the frames
+		 */
+		private final ReplayClock replayClock;
+
+		/**
+		 * The scheduler running the frames
+		 */
+		private final ReplayScheduler replayScheduler;
+
+		/**
+		 * The clock time of the last frame
+		 */
+		private long lastTime;
+
+		/**
+		 * If the play was stopped
+		 */
+		private volatile boolean cancelled = false;
+
+		/**
+		 * If no frame is scheduled because the replay is paused or has no ticks
+		 * It is guarded by the lock of the replay
+		 */
+		private boolean parked = false;
+
+		/**
+		 * If the play is parked with a check for new ticks scheduled, while playing a tick source that can grow
+		 * It is guarded by the lock of the replay
+		 */
+		private boolean polling = false;
+
+		/**
+		 * The future of the next frame
+		 */
+		private volatile ScheduledFuture<?> future;
+
+		/**
+		 * Constructor passing fields
+		 * @param replayClock the clock pacing the frames
+		 * @param replayScheduler the scheduler running the frames
+		 */
+		public PlayTask(ReplayClock replayClock, ReplayScheduler replayScheduler) {
+			this.replayClock = replayClock;
+			this.replayScheduler = replayScheduler;
+			this.lastTime = replayClock.currentTimeMillis();
+		}
+
+		/**
+		 * Schedules the next frame, unless the play was stopped
+		 * @param delayMillis the delay before the frame in milliseconds
+		 */
+		public void schedule(long delayMillis) {
+			if (!cancelled && !replayScheduler.isShutdown()) {
+				future = replayScheduler.schedule(this, delayMillis);
+			}
+		}
+
+		/**
+		 * Stops the play and cancels the next frame
+		 */
+		public void cancel() {
+			cancelled = true;
+			ScheduledFuture<?> future = this.future;
+			if (future != null) {
+				future.cancel(false);
+			}
+		}
+
+		/**
+		 * Schedules a frame at once if the play is parked
+		 * The time spent parked is not played
+		 */
+		public void wake() {
+			synchronized (CandleReplay.this) {
+				if (parked) {
+					parked = false;
+					lastTime = replayClock.currentTimeMillis();
+					ScheduledFuture<?> future = this.future;
+					// a check for new ticks already running plays the frame itself
+					if (!polling || future.cancel(false)) {
+						schedule(0);
+					}
+					polling = false;
+				}
+			}
+		}
+
+		/**
+		 * Parks the play if it can not play a frame
+		 * It is checked under the lock of the replay, so a concurrent wake is never lost.
+		 * While playing, the parked play checks for new ticks every {@link CandleReplay#TICK_POLL_MILLIS},
+		 * so a tick source that grows is played without {@link CandleReplay#notifyTicksAdded()}
+		 * @return true if the play was parked
+		 */
+		private boolean park() {
+			synchronized (CandleReplay.this) {
+				if (canPlayFrame()) {
+					if (parked) {
+						// the time spent parked is not played
+						parked = false;
+						polling = false;
+						lastTime = replayClock.currentTimeMillis();
+					}
+					return false;
+				}
+				parked = true;
+				polling = playThreadStatus == PlayThreadStatus.PLAYING && tickSource != null;
+				if (polling) {
+					schedule(TICK_POLL_MILLIS);
+				}
+				return true;
+			}
+		}
+
+		@Override
+		public void run() {
+			// a frame of a cancelled play that already started ends before the frames of the next play
+			synchronized (frameLock) {
+				if (cancelled || playThreadStatus == PlayThreadStatus.INACTIVATED) {
+					return;
+				}
+				long delayMillis = FRAME_MILLIS;
+				boolean parkedFrame = false;
+				try {
+					drainLiveFeed();
+					parkedFrame = park();
+					if (!parkedFrame) {
+						TickSource tickSource = CandleReplay.this.tickSource;
+						if (tickSource != null && tickSource.size() > 0) {
+							lastTime = playFrame(replayClock, lastTime, playThreadStatus);
+							delayMillis = replayClock.waitTime(FRAME_MILLIS);
+						}
+					}
+				} finally {
+					if (!parkedFrame) {
+						schedule(delayMillis);
+					}
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
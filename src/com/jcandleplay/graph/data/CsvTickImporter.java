@@ -0,0 +1,494 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.TimeZone;
+
+import com.jcandleplay.graph.utils.GraphDateUtils;
+
+/**
+ * <pre>
+ * This class imports ticks from CSV data into a {@link TickSink}
+ * Each line is "timestamp, price[, volume]", the fields can also be separated by ';' or tabs.
+ * The timestamp is either the epoch in milliseconds or a date "yyyy-MM-dd HH:mm:ss[.SSS]"
+ * in {@link CsvTickImporter#timeZone}. A first line that does not start with a number is taken as a header.
+ *
+ * The data is parsed straight from a byte buffer, numbers and dates are parsed by hand,
+ * so nothing is allocated per line and the ticks reach the sink as they are read.
+ * Importing into the {@link TickStore} of a playing {@link CandleReplay} feeds it incrementally,
+ * the replay set by {@link CsvTickImporter#setCandleReplay(CandleReplay)} is notified of each batch of ticks.
+ * </pre>
+ *
+ * @author Felipe Santos
+ *
+ */
+public class CsvTickImporter {
+	/**
+	 * The size of the read buffer, the longest line accepted
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The powers of ten that are exact doubles
+	 */
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * The sink of the imported ticks
+	 */
+	private final TickSink tickSink;
+
+	/**
+	 * The time zone of the date timestamps
+	 */
+	private TimeZone timeZone = GraphDateUtils.getDefaultTimeZone();
+
+	/**
+	 * The replay notified of the ticks imported, null if none
+	 */
+	private CandleReplay candleReplay;
+
+	/**
+	 * The read buffer
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * The position of the next byte to parse in {@link CsvTickImporter#buffer}
+	 */
+	private int position;
+
+	/**
+	 * The number of the line being parsed
+	 */
+	private long lineNumber;
+
+	/**
+	 * Constructor passing fields
+	 * @param tickSink the sink of the imported ticks
+	 */
+	public CsvTickImporter(TickSink tickSink) {
+		this.tickSink = tickSink;
+	}
+
+	/**
+	 * Sets the time zone of the date timestamps
+	 * @param timeZone the time zone of the date timestamps
+	 */
+	public void setTimeZone(TimeZone timeZone) {
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * Sets the replay notified after each batch of ticks added to the sink, the one playing the sink
+	 * @param candleReplay the {@link CandleReplay} to notify, null to notify none
+	 */
+	public void setCandleReplay(CandleReplay candleReplay) {
+		this.candleReplay = candleReplay;
+	}
+
+	/**
+	 * Imports the ticks of a CSV file
+	 * @param file the CSV file
+	 * @return the number of ticks imported
+	 * @throws IOException if the file can not be read or has an invalid line
+	 */
+	public long importFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return importChannel(channel);
+		}
+	}
+
+	/**
+	 * Imports the ticks of a CSV stream
+	 * @param inputStream the CSV stream, it is not closed
+	 * @return the number of ticks imported
+	 * @throws IOException if the stream can not be read or has an invalid line
+	 */
+	public long importStream(InputStream inputStream) throws IOException {
+		return importChannel(Channels.newChannel(inputStream));
+	}
+
+	/**
+	 * Imports the ticks of a CSV channel
+	 * @param channel the CSV channel, it is not closed
+	 * @return the number of ticks imported
+	 * @throws IOException if the channel can not be read or has an invalid line
+	 */
+	public long importChannel(ReadableByteChannel channel) throws IOException {
+		long numTicks = 0;
+		long notifiedTicks = 0;
+		lineNumber = 0;
+		buffer.clear();
+		boolean endOfData = false;
+		while (!endOfData) {
+			endOfData = channel.read(buffer) < 0;
+			buffer.flip();
+
+			// parses the complete lines, the last one only at the end of the data
+			position = 0;
+			int limit = buffer.limit();
+			while (position < limit) {
+				int lineEnd = indexOfLineEnd(position, limit);
+				if (lineEnd == limit && !endOfData) {
+					if (position == 0 && limit == buffer.capacity()) {
+						throw new IOException("Line too long at line " + (lineNumber + 1));
+					}
+					break;
+				}
+				lineNumber++;
+				if (parseLine(lineEnd)) {
+					numTicks++;
+				}
+				position = lineEnd + 1;
+			}
+
+			buffer.position(Math.min(position, limit));
+			buffer.compact();
+
+			CandleReplay candleReplay = this.candleReplay;
+			if (candleReplay != null && numTicks > notifiedTicks) {
+				candleReplay.notifyTicksAdded();
+				notifiedTicks = numTicks;
+			}
+		}
+		return numTicks;
+	}
+
+	/**
+	 * Finds the end of the line starting at a position
+	 * @param from the position of the line
+	 * @param limit the limit of the data in the buffer
+	 * @return the position of the '\n' of the line, or the limit
+	 */
+	private int indexOfLineEnd(int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		return limit;
+	}
+
+	/**
+	 * Parses the line at {@link CsvTickImporter#position} and adds its tick to the sink
+	 * @param lineEnd the position of the end of the line
+	 * @return true if a tick was added, false for a blank or header line
+	 * @throws IOException if the line is invalid
+	 */
+	private boolean parseLine(int lineEnd) throws IOException {
+		if (lineNumber == 1 && lineEnd - position >= 3 && buffer.get(position) == (byte) 0xEF
+				&& buffer.get(position + 1) == (byte) 0xBB && buffer.get(position + 2) == (byte) 0xBF) {
+			// the byte order mark of an UTF-8 file
+			position += 3;
+		}
+		int end = lineEnd;
+		while (end > position && isBlank(buffer.get(end - 1))) {
+			end--;
+		}
+		while (position < end && isBlank(buffer.get(position))) {
+			position++;
+		}
+		if (position == end) {
+			return false;
+		}
+
+		byte first = buffer.get(position);
+		if (lineNumber == 1 && (first < '0' || first > '9') && first != '-' && first != '+') {
+			// header
+			return false;
+		}
+
+		long timestamp = parseTimestamp(end);
+		skipSeparator(end);
+		double value = parseDouble(end);
+		double volume = 0;
+		if (position < end) {
+			skipSeparator(end);
+			if (position < end) {
+				volume = parseDouble(end);
+			}
+		}
+		tickSink.addTick(timestamp, value, volume);
+		return true;
+	}
+
+	/**
+	 * Parses a timestamp, the epoch in milliseconds or a date
+	 * @param end the end of the line
+	 * @return the timestamp in milliseconds
+	 * @throws IOException if the timestamp is invalid
+	 */
+	private long parseTimestamp(int end) throws IOException {
+		if (position + 4 < end && buffer.get(position + 4) == '-') {
+			return parseDate(end);
+		}
+		return parseLong(end);
+	}
+
+	/**
+	 * Parses a date "yyyy-MM-dd HH:mm:ss[.SSS]", also with 'T' between the date and the time
+	 * @param end the end of the line
+	 * @return the date in milliseconds
+	 * @throws IOException if the date is invalid
+	 */
+	private long parseDate(int end) throws IOException {
+		int year = parseDigits(4, end);
+		expect('-', end);
+		int month = parseDigits(2, end);
+		expect('-', end);
+		int day = parseDigits(2, end);
+		if (position >= end || (buffer.get(position) != ' ' && buffer.get(position) != 'T')) {
+			throw invalidLine();
+		}
+		position++;
+		int hour = parseDigits(2, end);
+		expect(':', end);
+		int minute = parseDigits(2, end);
+		expect(':', end);
+		int second = parseDigits(2, end);
+		int millis = 0;
+		if (position < end && buffer.get(position) == '.') {
+			position++;
+			int digits = 0;
+			while (position < end && isDigit(buffer.get(position))) {
+				if (digits < 3) {
+					millis = millis * 10 + (buffer.get(position) - '0');
+				}
+				digits++;
+				position++;
+			}
+			for (; digits < 3; digits++) {
+				millis *= 10;
+			}
+		}
+		if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+			throw invalidLine();
+		}
+
+		long localTime = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60000l + second * 1000l + millis;
+		long utcTime = localTime - timeZone.getOffset(localTime);
+		return localTime - timeZone.getOffset(utcTime);
+	}
+
+	/**
+	 * Gets the number of days from the epoch to a date of the proleptic Gregorian calendar
+	 * @param year the year
+	 * @param month the month, from 1
+	 * @param day the day of the month, from 1
+	 * @return the number of days from 1970-01-01
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097l + dayOfEra - 719468;
+	}
+
+	/**
+	 * Parses a fixed number of digits
+	 * @param digits the number of digits
+	 * @param end the end of the line
+	 * @return the number
+	 * @throws IOException if there are not enough digits
+	 */
+	private int parseDigits(int digits, int end) throws IOException {
+		int number = 0;
+		for (int i = 0; i < digits; i++) {
+			if (position >= end || !isDigit(buffer.get(position))) {
+				throw invalidLine();
+			}
+			number = number * 10 + (buffer.get(position++) - '0');
+		}
+		return number;
+	}
+
+	/**
+	 * Parses an integer number
+	 * @param end the end of the line
+	 * @return the number
+	 * @throws IOException if the number is invalid
+	 */
+	private long parseLong(int end) throws IOException {
+		boolean negative = false;
+		if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+			negative = buffer.get(position++) == '-';
+		}
+		int start = position;
+		long number = 0;
+		while (position < end && isDigit(buffer.get(position))) {
+			number = number * 10 + (buffer.get(position++) - '0');
+		}
+		if (position == start || position - start > 18) {
+			throw invalidLine();
+		}
+		return negative ? -number : number;
+	}
+
+	/**
+	 * Parses a decimal number, like "1.2345", "-3" or "1.5e-3"
+	 * The usual prices are converted exactly from their digits,
+	 * the numbers with too many digits fall back to {@link Double#parseDouble(String)}
+	 * @param end the end of the line
+	 * @return the number
+	 * @throws IOException if the number is invalid
+	 */
+	private double parseDouble(int end) throws IOException {
+		int start = position;
+		boolean negative = false;
+		if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+			negative = buffer.get(position++) == '-';
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		while (position < end && isDigit(buffer.get(position))) {
+			mantissa = mantissa * 10 + (buffer.get(position++) - '0');
+			if (mantissa != 0) {
+				digits++;
+			}
+			hasDigits = true;
+		}
+		if (position < end && buffer.get(position) == '.') {
+			position++;
+			while (position < end && isDigit(buffer.get(position))) {
+				mantissa = mantissa * 10 + (buffer.get(position++) - '0');
+				if (mantissa != 0) {
+					digits++;
+				}
+				exponent--;
+				hasDigits = true;
+			}
+		}
+		if (!hasDigits) {
+			throw invalidLine();
+		}
+		if (position < end && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+			position++;
+			exponent += (int) parseLong(end);
+		}
+		if (position < end && !isSeparator(buffer.get(position)) && !isBlank(buffer.get(position))) {
+			throw invalidLine();
+		}
+
+		double value;
+		if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+			// both the mantissa and the power of ten are exact, so the result is correctly rounded
+			value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+
+		byte[] bytes = new byte[position - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return Double.parseDouble(new String(bytes, "US-ASCII"));
+	}
+
+	/**
+	 * Skips the separator between two fields
+	 * @param end the end of the line
+	 * @throws IOException if there is no separator
+	 */
+	private void skipSeparator(int end) throws IOException {
+		while (position < end && buffer.get(position) == ' ') {
+			position++;
+		}
+		if (position >= end || !isSeparator(buffer.get(position))) {
+			throw invalidLine();
+		}
+		position++;
+		while (position < end && isBlank(buffer.get(position))) {
+			position++;
+		}
+	}
+
+	/**
+	 * Skips an expected character
+	 * @param character the expected character
+	 * @param end the end of the line
+	 * @throws IOException if the character is not there
+	 */
+	private void expect(char character, int end) throws IOException {
+		if (position >= end || buffer.get(position) != character) {
+			throw invalidLine();
+		}
+		position++;
+	}
+
+	/**
+	 * Creates the exception of an invalid line
+	 * @return the exception of the line being parsed
+	 */
+	private IOException invalidLine() {
+		return new IOException("Invalid tick at line " + lineNumber);
+	}
+
+	/**
+	 * Checks if a byte is a digit
+	 * @param b the byte
+	 * @return true if the byte is a digit
+	 */
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * Checks if a byte separates two fields
+	 * @param b the byte
+	 * @return true if the byte separates two fields
+	 */
+	private static boolean isSeparator(byte b) {
+		return b == ',' || b == ';' || b == '\t';
+	}
+
+	/**
+	 * Checks if a byte is a blank, including the '\r' of the line ends
+	 * @param b the byte
+	 * @return true if the byte is a blank
+	 */
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\r' || b == '\t';
+	}
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * The exponential moving average of the closes of the candles
+ * It starts with the simple average of the first candles of its period.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class ExponentialMovingAverage extends CandleIndicator {
+	/**
+	 * The number of candles of the average
+	 */
+	private final int period;
+
+	/**
+	 * The weight of a new close
+	 */
+	private final double alpha;
+
+	/**
+	 * The number of closed candles added
+	 */
+	private int count = 0;
+
+	/**
+	 * The sum of the closes while there are less candles than the period
+	 */
+	private double sum = 0;
+
+	/**
+	 * The average of the closed candles
+	 */
+	private double average = Double.NaN;
+
+	/**
+	 * Constructor passing fields
+	 * @param period the number of candles of the average
+	 */
+	public ExponentialMovingAverage(int period) {
+		super("EMA " + period, 1);
+		if (period <= 0) {
+			throw new IllegalArgumentException("Invalid period: " + period);
+		}
+		this.period = period;
+		this.alpha = 2.0 / (period + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addClosedCandle(Candle candle, double[] values) {
+		count++;
+		if (count < period) {
+			sum += candle.close;
+		} else if (count == period) {
+			average = (sum + candle.close) / period;
+		} else {
+			average += alpha * (candle.close - average);
+		}
+		values[0] = average;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void computeOpenCandle(Candle candle, double[] values) {
+		if (count + 1 < period) {
+			values[0] = Double.NaN;
+		} else if (count + 1 == period) {
+			values[0] = (sum + candle.close) / period;
+		} else {
+			values[0] = average + alpha * (candle.close - average);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void resetState() {
+		count = 0;
+		sum = 0;
+		average = Double.NaN;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Object saveState() {
+		return new double[] {count, sum, average};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void restoreState(Object state) {
+		double[] values = (double[]) state;
+		count = (int) values[0];
+		sum = values[1];
+		average = values[2];
+	}
+}
\ No newline at end of file
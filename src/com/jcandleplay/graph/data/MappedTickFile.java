@@ -0,0 +1,295 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <pre>
+ * This class reads the ticks of a binary tick file mapped in memory
+ * The ticks are not copied to the heap, the operating system loads only the pages being played.
+ *
+ * The file is written by {@link TickFileWriter} and its layout, little endian, is:
+ *
+ *   header, {@link MappedTickFile#HEADER_SIZE} bytes
+ *     int    magic, {@link MappedTickFile#MAGIC}
+ *     int    version, {@link MappedTickFile#VERSION}
+ *     long   tick count
+ *     int    block size, the number of ticks of a block of the index
+ *     int    block count
+ *     long   offset of the block index
+ *   records, {@link MappedTickFile#RECORD_SIZE} bytes each
+ *     long   timestamp
+ *     double value
+ *     double sum of the volumes up to the tick, inclusive
+ *     double sum of the notionals up to the tick, inclusive
+ *   block index
+ *     long   timestamp of the first tick of each block
+ *
+ * The volume of a tick is the difference of the sums of the volumes of the tick and of the one before it.
+ * The files of version 1 have records of 16 bytes, without the sums, and are read without volume.
+ * </pre>
+ *
+ * @author Felipe Santos
+ *
+ */
+public class MappedTickFile implements TickSource {
+	/**
+	 * The magic number of a tick file, "JCPT"
+	 */
+	static final int MAGIC = 0x4A435054;
+
+	/**
+	 * The version of the file layout
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * The size of a tick record of the files of version 1, without the sums
+	 */
+	static final int RECORD_SIZE_V1 = 16;
+
+	/**
+	 * The size of the header
+	 */
+	static final int HEADER_SIZE = 64;
+
+	/**
+	 * The size of a tick record
+	 */
+	static final int RECORD_SIZE = 32;
+
+	/**
+	 * The byte order of the file
+	 */
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * The number of bits of the index of a record inside a mapped segment
+	 * A segment has at most 1 GB, less than the limit of a mapped buffer
+	 */
+	private static final int SEGMENT_BITS = 25;
+
+	/**
+	 * The mask of the index of a record inside a mapped segment
+	 */
+	private static final long SEGMENT_MASK = (1l << SEGMENT_BITS) - 1;
+
+	/**
+	 * The mapped segments of the records
+	 */
+	private final ByteBuffer[] segments;
+
+	/**
+	 * The number of ticks of the file
+	 */
+	private final long size;
+
+	/**
+	 * The size of a tick record of the file
+	 */
+	private final int recordSize;
+
+	/**
+	 * The number of ticks of a block of the index
+	 */
+	private final int blockSize;
+
+	/**
+	 * The timestamp of the first tick of each block
+	 */
+	private final long[] blockTimestamps;
+
+	/**
+	 * Constructor mapping a file
+	 * @param file the tick file to map
+	 * @throws IOException if the file can not be read or is not a tick file
+	 */
+	public MappedTickFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, HEADER_SIZE);
+			int magic = header.getInt();
+			int version = header.getInt();
+			if (magic != MAGIC || version < 1 || version > VERSION) {
+				throw new IOException("Not a tick file: " + file);
+			}
+			recordSize = version == 1 ? RECORD_SIZE_V1 : RECORD_SIZE;
+			size = header.getLong();
+			blockSize = header.getInt();
+			int blockCount = header.getInt();
+			long indexOffset = header.getLong();
+
+			ByteBuffer index = read(channel, indexOffset, blockCount * 8);
+			blockTimestamps = new long[blockCount];
+			for (int block = 0; block < blockCount; block++) {
+				blockTimestamps[block] = index.getLong();
+			}
+
+			int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+			segments = new ByteBuffer[segmentCount];
+			for (int segment = 0; segment < segmentCount; segment++) {
+				long firstRecord = (long) segment << SEGMENT_BITS;
+				long records = Math.min(size - firstRecord, SEGMENT_MASK + 1);
+				segments[segment] = channel.map(MapMode.READ_ONLY, HEADER_SIZE + firstRecord * recordSize, records * recordSize)
+						.order(BYTE_ORDER);
+			}
+		}
+	}
+
+	/**
+	 * Reads a range of a file
+	 * @param channel the channel of the file
+	 * @param position the position of the range
+	 * @param length the length of the range
+	 * @return a buffer with the range ready to be read
+	 * @throws IOException if the range can not be read
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(BYTE_ORDER);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Truncated tick file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes all the ticks of a source to a tick file
+	 * @param file the file to write, it is replaced if it exists
+	 * @param tickSource the {@link TickSource} to write
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(File file, TickSource tickSource) throws IOException {
+		try (TickFileWriter writer = new TickFileWriter(file)) {
+			writer.addTicks(tickSource);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getTimestamp(long index) {
+		return segments[(int) (index >>> SEGMENT_BITS)].getLong((int) (index & SEGMENT_MASK) * recordSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getValue(long index) {
+		return segments[(int) (index >>> SEGMENT_BITS)].getDouble((int) (index & SEGMENT_MASK) * recordSize + 8);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getVolume(long index) {
+		return getVolumeSum(index + 1) - getVolumeSum(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getVolumeSum(long fromIndex, long toIndex) {
+		return getVolumeSum(toIndex) - getVolumeSum(fromIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getNotionalSum(long fromIndex, long toIndex) {
+		return getNotionalSum(toIndex) - getNotionalSum(fromIndex);
+	}
+
+	/**
+	 * Gets the sum of the volumes of the ticks before an index
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the volumes of the ticks before the index, 0 on a file of version 1
+	 */
+	private double getVolumeSum(long toIndex) {
+		if (toIndex == 0 || recordSize == RECORD_SIZE_V1) {
+			return 0;
+		}
+		return segments[(int) ((toIndex - 1) >>> SEGMENT_BITS)].getDouble((int) ((toIndex - 1) & SEGMENT_MASK) * recordSize + 16);
+	}
+
+	/**
+	 * Gets the sum of the notionals of the ticks before an index
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the notionals of the ticks before the index, 0 on a file of version 1
+	 */
+	private double getNotionalSum(long toIndex) {
+		if (toIndex == 0 || recordSize == RECORD_SIZE_V1) {
+			return 0;
+		}
+		return segments[(int) ((toIndex - 1) >>> SEGMENT_BITS)].getDouble((int) ((toIndex - 1) & SEGMENT_MASK) * recordSize + 24);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The block index narrows the search to one block, so only its pages are touched
+	 */
+	@Override
+	public long indexAfter(long time, long fromIndex, long toIndex) {
+		// the first block starting after the time
+		int low = 0;
+		int high = blockTimestamps.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (blockTimestamps[middle] <= time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		long blockFrom = Math.max(fromIndex, (low - 1l) * blockSize);
+		long blockTo = Math.min(toIndex, (long) low * blockSize);
+		if (blockFrom >= blockTo) {
+			return blockFrom >= toIndex ? toIndex : Math.max(fromIndex, blockTo);
+		}
+		return TickTimeIndex.indexAfter(this, time, blockFrom, blockTo);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class stores ticks outside of the Java heap, in direct buffers,
+ * so a history of any length does not grow the heap nor the work of the garbage collector.
+ * Each tick is a record of a timestamp and a value, and from the first tick with volume a record of the prefix sums
+ * of the volumes and of the notionals, which answer the volume and the notional of any range of ticks in O(1).
+ * The records grow in chunks of {@link OffHeapTickStore#CHUNK_SIZE} ticks, so a store can hold more than 2^31 ticks.
+ * The heap only keeps one reference per chunk.
+ * The ticks must be added in time order.
+ *
+ * The direct memory is limited by -XX:MaxDirectMemorySize and is released when the store is collected.
+ *
+ * It can be read by one thread while another one adds ticks.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class OffHeapTickStore implements TickSource, TickSink {
+	/**
+	 * The number of bits of the index inside a chunk
+	 */
+	private static final int CHUNK_BITS = 20;
+
+	/**
+	 * The number of ticks of each chunk, a chunk has 16 MB, and a chunk of sums 16 MB more
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/**
+	 * The mask of the index inside a chunk
+	 */
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * The size of a tick record, a long timestamp followed by a double value
+	 */
+	private static final int RECORD_SIZE = 16;
+
+	/**
+	 * The size of a sum record, the double sum of the volumes and the double sum of the notionals up to the tick inclusive
+	 */
+	private static final int SUM_RECORD_SIZE = 16;
+
+	/**
+	 * The chunks of tick records
+	 */
+	private ByteBuffer[] chunks = new ByteBuffer[16];
+
+	/**
+	 * The chunks of sum records
+	 * A chunk is null while all of its ticks have no volume
+	 */
+	private ByteBuffer[] sumChunks = new ByteBuffer[16];
+
+	/**
+	 * If a tick with volume was added, from then on the chunks of sums are allocated
+	 */
+	private boolean hasVolume = false;
+
+	/**
+	 * The number of ticks stored
+	 * It is written after the tick records so readers always see complete ticks
+	 */
+	private volatile long size = 0;
+
+	/**
+	 * Empty constructor
+	 */
+	public OffHeapTickStore() {
+	}
+
+	/**
+	 * Constructor copying a tick source
+	 * @param tickSource the {@link TickSource} to copy
+	 */
+	public OffHeapTickStore(TickSource tickSource) {
+		addTicks(tickSource);
+	}
+
+	/**
+	 * Adds a tick without volume at the end of this store
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 */
+	public void addTick(long timestamp, double value) {
+		addTick(timestamp, value, 0);
+	}
+
+	/**
+	 * Adds a tick at the end of this store
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 * @param volume the traded volume of the tick
+	 */
+	@Override
+	public void addTick(long timestamp, double value, double volume) {
+		long index = size;
+		if (index > 0 && timestamp < getTimestamp(index - 1)) {
+			throw new IllegalArgumentException("Tick out of time order: " + timestamp);
+		}
+
+		int chunk = (int) (index >>> CHUNK_BITS);
+		if (chunk == chunks.length) {
+			ByteBuffer[] newChunks = new ByteBuffer[chunk * 2];
+			System.arraycopy(chunks, 0, newChunks, 0, chunk);
+			ByteBuffer[] newSumChunks = new ByteBuffer[chunk * 2];
+			System.arraycopy(sumChunks, 0, newSumChunks, 0, chunk);
+			chunks = newChunks;
+			sumChunks = newSumChunks;
+		}
+		if (chunks[chunk] == null) {
+			chunks[chunk] = ByteBuffer.allocateDirect(CHUNK_SIZE * RECORD_SIZE).order(ByteOrder.nativeOrder());
+		}
+		hasVolume |= volume != 0;
+		if (hasVolume && sumChunks[chunk] == null) {
+			sumChunks[chunk] = ByteBuffer.allocateDirect(CHUNK_SIZE * SUM_RECORD_SIZE).order(ByteOrder.nativeOrder());
+		}
+
+		int position = (int) (index & CHUNK_MASK) * RECORD_SIZE;
+		ByteBuffer buffer = chunks[chunk];
+		buffer.putLong(position, timestamp);
+		buffer.putDouble(position + 8, value);
+		if (hasVolume) {
+			int sumPosition = (int) (index & CHUNK_MASK) * SUM_RECORD_SIZE;
+			ByteBuffer sumBuffer = sumChunks[chunk];
+			sumBuffer.putDouble(sumPosition, getVolumeSum(index) + volume);
+			sumBuffer.putDouble(sumPosition + 8, getNotionalSum(index) + value * volume);
+		}
+		size = index + 1;
+	}
+
+	/**
+	 * Adds all the ticks of a source at the end of this store
+	 * @param tickSource the {@link TickSource} to add
+	 */
+	public void addTicks(TickSource tickSource) {
+		long sourceSize = tickSource.size();
+		for (long index = 0; index < sourceSize; index++) {
+			addTick(tickSource.getTimestamp(index), tickSource.getValue(index), tickSource.getVolume(index));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Checks if there is no tick stored
+	 * @return true if there is no tick stored
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getTimestamp(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)].getLong((int) (index & CHUNK_MASK) * RECORD_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getValue(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)].getDouble((int) (index & CHUNK_MASK) * RECORD_SIZE + 8);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getVolume(long index) {
+		return getVolumeSum(index + 1) - getVolumeSum(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getVolumeSum(long fromIndex, long toIndex) {
+		return getVolumeSum(toIndex) - getVolumeSum(fromIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getNotionalSum(long fromIndex, long toIndex) {
+		return getNotionalSum(toIndex) - getNotionalSum(fromIndex);
+	}
+
+	/**
+	 * Gets the sum of the volumes of the ticks before an index
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the volumes of the ticks before the index
+	 */
+	private double getVolumeSum(long toIndex) {
+		ByteBuffer sumChunk = toIndex == 0 ? null : sumChunks[(int) ((toIndex - 1) >>> CHUNK_BITS)];
+		return sumChunk == null ? 0 : sumChunk.getDouble((int) ((toIndex - 1) & CHUNK_MASK) * SUM_RECORD_SIZE);
+	}
+
+	/**
+	 * Gets the sum of the notionals of the ticks before an index
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the notionals of the ticks before the index
+	 */
+	private double getNotionalSum(long toIndex) {
+		ByteBuffer sumChunk = toIndex == 0 ? null : sumChunks[(int) ((toIndex - 1) >>> CHUNK_BITS)];
+		return sumChunk == null ? 0 : sumChunk.getDouble((int) ((toIndex - 1) & CHUNK_MASK) * SUM_RECORD_SIZE + 8);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long indexAfter(long time, long fromIndex, long toIndex) {
+		return TickTimeIndex.indexAfter(this, time, fromIndex, toIndex);
+	}
+
+	/**
+	 * Creates a {@link Tick} with the data of a stored tick
+	 * @param index the index of the tick
+	 * @return a new {@link Tick}
+	 */
+	public Tick getTick(long index) {
+		return new Tick(getValue(index), getTimestamp(index), getVolume(index));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * The clock that paces a {@link CandleReplay}
+ * The replay advances by the time elapsed on its clock multiplied by the time acceleration,
+ * so the wall clock, {@link SystemReplayClock}, plays in real time and a {@link SimulatedReplayClock}
+ * plays as fast as possible with the same steps on every run.
+ *
+ * @author Felipe Santos
+ *
+ */
+public interface ReplayClock {
+	/**
+	 * Gets the current time of this clock
+	 * @return the current time in milliseconds
+	 */
+	long currentTimeMillis();
+
+	/**
+	 * Gets the real time to wait until this clock advances the given time
+	 * It lets the frames be scheduled instead of sleeping on a thread of their own
+	 * @param millis the time this clock must advance in milliseconds
+	 * @return the real time to wait in milliseconds
+	 */
+	long waitTime(long millis);
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs the frames of many replays and graphs on a few threads
+ * Instead of one sleeping thread per {@link CandleReplay} and per graph render loop,
+ * each frame is a short task scheduled on a shared pool, so hundreds of charts share a few threads.
+ * The threads are daemon threads, so a scheduler never keeps the JVM alive.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class ReplayScheduler {
+	/**
+	 * The scheduler shared by the replays and graphs that are not given one
+	 */
+	private static ReplayScheduler defaultScheduler;
+
+	/**
+	 * The number of schedulers created, to name their threads
+	 */
+	private static final AtomicInteger schedulerCount = new AtomicInteger();
+
+	/**
+	 * The executor running the frames
+	 */
+	private final ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * Constructor with one thread per processor, up to four
+	 */
+	public ReplayScheduler() {
+		this(Math.min(Runtime.getRuntime().availableProcessors(), 4));
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param threadCount the number of threads running the frames
+	 */
+	public ReplayScheduler(int threadCount) {
+		final int schedulerId = schedulerCount.incrementAndGet();
+		this.executor = new ScheduledThreadPoolExecutor(threadCount, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ReplayScheduler-" + schedulerId + " thread " + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// cancelled frames are dropped at once instead of waiting for their delay
+		executor.setRemoveOnCancelPolicy(true);
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	/**
+	 * Gets the scheduler shared by the replays and graphs that are not given one
+	 * A new one is created if the shared scheduler was shut down
+	 * @return the shared {@link ReplayScheduler}
+	 */
+	public static synchronized ReplayScheduler getDefault() {
+		if (defaultScheduler == null || defaultScheduler.isShutdown()) {
+			defaultScheduler = new ReplayScheduler();
+		}
+		return defaultScheduler;
+	}
+
+	/**
+	 * Schedules a task to run once
+	 * @param task the task to run
+	 * @param delayMillis the delay before running it in milliseconds
+	 * @return the future to cancel the task
+	 */
+	public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+		return executor.schedule(new ReportingTask(task), delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Schedules a task to run at a fixed rate until it is cancelled
+	 * An exception thrown by the task is reported and does not stop the next runs
+	 * @param task the task to run
+	 * @param periodMillis the period of the runs in milliseconds
+	 * @return the future to cancel the task
+	 */
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long periodMillis) {
+		return executor.scheduleAtFixedRate(new ReportingTask(task), 0, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops running the scheduled tasks, the running ones are allowed to finish
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Checks if this scheduler was shut down
+	 * @return true if this scheduler was shut down
+	 */
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	/**
+	 * Waits for the running tasks to finish after a shutdown
+	 * @param timeoutMillis the maximum time to wait in milliseconds
+	 * @return true if the tasks finished, false if the timeout elapsed
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+		return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * A task that reports its exceptions, so one failing chart does not silently stop
+	 */
+	private static class ReportingTask implements Runnable {
+		/**
+		 * The task to run
+		 */
+		private final Runnable task;
+
+		/**
+		 * Constructor passing fields
+		 * @param task the task to run
+		 */
+		public ReportingTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,177 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * This class keeps the last values of a moving window in a ring buffer, with their running sum and sum of squares
+ * Adding a value is O(1). The sums are recomputed from the ring each time it wraps around,
+ * so the rounding errors of the running sums never build up over a long replay.
+ *
+ * @author Felipe Santos
+ *
+ */
+class RollingWindow {
+	/**
+	 * The values of the window, {@link RollingWindow#position} is the oldest one when the window is full
+	 */
+	private final double[] ring;
+
+	/**
+	 * The position of the next value in {@link RollingWindow#ring}
+	 */
+	private int position = 0;
+
+	/**
+	 * The number of values of the window
+	 */
+	private int count = 0;
+
+	/**
+	 * The sum of the values of the window
+	 */
+	private double sum = 0;
+
+	/**
+	 * The sum of the squares of the values of the window
+	 */
+	private double sumOfSquares = 0;
+
+	/**
+	 * Constructor passing fields
+	 * @param period the number of values of a full window
+	 */
+	RollingWindow(int period) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Invalid period: " + period);
+		}
+		this.ring = new double[period];
+	}
+
+	/**
+	 * Constructor copying a window
+	 * @param rollingWindow the {@link RollingWindow} to copy
+	 */
+	RollingWindow(RollingWindow rollingWindow) {
+		this.ring = new double[rollingWindow.ring.length];
+		copyFrom(rollingWindow);
+	}
+
+	/**
+	 * Copies the values of a window with the same period
+	 * @param rollingWindow the {@link RollingWindow} to copy
+	 */
+	void copyFrom(RollingWindow rollingWindow) {
+		System.arraycopy(rollingWindow.ring, 0, ring, 0, ring.length);
+		position = rollingWindow.position;
+		count = rollingWindow.count;
+		sum = rollingWindow.sum;
+		sumOfSquares = rollingWindow.sumOfSquares;
+	}
+
+	/**
+	 * Adds a value to the window, removing the oldest one if it is full
+	 * @param value the value to add
+	 */
+	void add(double value) {
+		if (count == ring.length) {
+			double oldest = ring[position];
+			sum -= oldest;
+			sumOfSquares -= oldest * oldest;
+		} else {
+			count++;
+		}
+		ring[position] = value;
+		sum += value;
+		sumOfSquares += value * value;
+
+		position++;
+		if (position == ring.length) {
+			position = 0;
+			recomputeSums();
+		}
+	}
+
+	/**
+	 * Recomputes the sums from the values of the window
+	 */
+	private void recomputeSums() {
+		sum = 0;
+		sumOfSquares = 0;
+		for (int i = 0; i < count; i++) {
+			sum += ring[i];
+			sumOfSquares += ring[i] * ring[i];
+		}
+	}
+
+	/**
+	 * Discards the values of the window
+	 */
+	void clear() {
+		position = 0;
+		count = 0;
+		sum = 0;
+		sumOfSquares = 0;
+	}
+
+	/**
+	 * Gets the number of values of a full window
+	 * @return the period of the window
+	 */
+	int getPeriod() {
+		return ring.length;
+	}
+
+	/**
+	 * Gets the number of values of the window
+	 * @return the number of values of the window
+	 */
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the value removed by the next {@link RollingWindow#add(double)}
+	 * @return the oldest value if the window is full, otherwise 0
+	 */
+	double getLeavingValue() {
+		return count == ring.length ? ring[position] : 0;
+	}
+
+	/**
+	 * Gets the sum of the values of the window
+	 * @return the sum of the values of the window
+	 */
+	double getSum() {
+		return sum;
+	}
+
+	/**
+	 * Gets the sum of the squares of the values of the window
+	 * @return the sum of the squares of the values of the window
+	 */
+	double getSumOfSquares() {
+		return sumOfSquares;
+	}
+}
\ No newline at end of file
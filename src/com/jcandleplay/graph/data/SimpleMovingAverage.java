@@ -0,0 +1,92 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * The simple moving average of the closes of the last candles
+ *
+ * @author Felipe Santos
+ *
+ */
+public class SimpleMovingAverage extends CandleIndicator {
+	/**
+	 * The closes of the last candles
+	 */
+	private final RollingWindow window;
+
+	/**
+	 * Constructor passing fields
+	 * @param period the number of candles of the average
+	 */
+	public SimpleMovingAverage(int period) {
+		super("SMA " + period, 1);
+		this.window = new RollingWindow(period);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addClosedCandle(Candle candle, double[] values) {
+		window.add(candle.close);
+		values[0] = window.getCount() == window.getPeriod() ? window.getSum() / window.getPeriod() : Double.NaN;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void computeOpenCandle(Candle candle, double[] values) {
+		if (window.getCount() + 1 < window.getPeriod()) {
+			values[0] = Double.NaN;
+		} else {
+			values[0] = (window.getSum() - window.getLeavingValue() + candle.close) / window.getPeriod();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void resetState() {
+		window.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Object saveState() {
+		return new RollingWindow(window);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void restoreState(Object state) {
+		window.copyFrom((RollingWindow) state);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only advances when it is told to
+ * Waiting advances the clock at once, so a {@link CandleReplay} paced by it
+ * plays as fast as the CPU allows, and every frame advances exactly the same replay time.
+ * The same ticks are then always aggregated into the same sequence of candles, as needed by backtests.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class SimulatedReplayClock implements ReplayClock {
+	/**
+	 * The current time of the clock
+	 */
+	private final AtomicLong time;
+
+	/**
+	 * Constructor starting at time zero
+	 */
+	public SimulatedReplayClock() {
+		this(0);
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param time the initial time of the clock in milliseconds
+	 */
+	public SimulatedReplayClock(long time) {
+		this.time = new AtomicLong(time);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long currentTimeMillis() {
+		return time.get();
+	}
+
+	/**
+	 * Advances the clock at once, so there is no time to wait
+	 * @param millis the time to advance in milliseconds
+	 * @return zero
+	 */
+	@Override
+	public long waitTime(long millis) {
+		advance(millis);
+		return 0;
+	}
+
+	/**
+	 * Advances the clock
+	 * @param millis the time to advance in milliseconds
+	 */
+	public void advance(long millis) {
+		time.addAndGet(millis);
+	}
+
+	/**
+	 * Sets the current time of the clock
+	 * @param time the time in milliseconds
+	 */
+	public void setTime(long time) {
+		this.time.set(time);
+	}
+}
\ No newline at end of file
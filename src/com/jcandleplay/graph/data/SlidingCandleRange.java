@@ -0,0 +1,228 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * This class keeps the highest high and the lowest low of a window of candles that only slides forward
+ * Each window is a monotonic deque: a candle is dropped as soon as a newer one has a higher high, or a lower low,
+ * so adding a candle and sliding the window cost O(1) amortized, as needed by the autoscale of a live play.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class SlidingCandleRange {
+	/**
+	 * The deque of the candles that may still be the highest high, with decreasing highs
+	 */
+	private final CandleDeque highDeque = new CandleDeque();
+
+	/**
+	 * The deque of the candles that may still be the lowest low, with increasing lows
+	 */
+	private final CandleDeque lowDeque = new CandleDeque();
+
+	/**
+	 * The index of the last candle added, -1 if none
+	 */
+	private int lastIndex = -1;
+
+	/**
+	 * Adds a candle at the end of the window
+	 * @param index the index of the candle, after the last one added
+	 * @param high the high of the candle
+	 * @param low the low of the candle
+	 */
+	public void add(int index, double high, double low) {
+		if (index <= lastIndex) {
+			throw new IllegalArgumentException("Candle out of order: " + index);
+		}
+		while (!highDeque.isEmpty() && highDeque.lastValue() <= high) {
+			highDeque.removeLast();
+		}
+		highDeque.addLast(index, high);
+		while (!lowDeque.isEmpty() && lowDeque.lastValue() >= low) {
+			lowDeque.removeLast();
+		}
+		lowDeque.addLast(index, low);
+		lastIndex = index;
+	}
+
+	/**
+	 * Slides the start of the window, removing the candles before an index
+	 * @param index the index of the first candle of the window
+	 */
+	public void removeBefore(int index) {
+		while (!highDeque.isEmpty() && highDeque.firstIndex() < index) {
+			highDeque.removeFirst();
+		}
+		while (!lowDeque.isEmpty() && lowDeque.firstIndex() < index) {
+			lowDeque.removeFirst();
+		}
+	}
+
+	/**
+	 * Removes all the candles
+	 */
+	public void clear() {
+		highDeque.clear();
+		lowDeque.clear();
+		lastIndex = -1;
+	}
+
+	/**
+	 * Gets the index of the last candle added
+	 * @return the index of the last candle added, -1 if none
+	 */
+	public int getLastIndex() {
+		return lastIndex;
+	}
+
+	/**
+	 * Gets the highest high of the window
+	 * @return the highest high, or negative infinity if the window is empty
+	 */
+	public double getHigh() {
+		return highDeque.isEmpty() ? Double.NEGATIVE_INFINITY : highDeque.firstValue();
+	}
+
+	/**
+	 * Gets the lowest low of the window
+	 * @return the lowest low, or positive infinity if the window is empty
+	 */
+	public double getLow() {
+		return lowDeque.isEmpty() ? Double.POSITIVE_INFINITY : lowDeque.firstValue();
+	}
+
+	/**
+	 * A deque of candle indexes and values in growing circular arrays, without boxing
+	 */
+	private static class CandleDeque {
+		/**
+		 * The indexes of the candles
+		 */
+		private int[] indexes = new int[64];
+
+		/**
+		 * The values of the candles
+		 */
+		private double[] values = new double[64];
+
+		/**
+		 * The position of the first element
+		 */
+		private int head = 0;
+
+		/**
+		 * The number of elements
+		 */
+		private int size = 0;
+
+		/**
+		 * Checks if the deque has no element
+		 * @return true if the deque has no element
+		 */
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * Gets the candle index of the first element
+		 * @return the candle index of the first element
+		 */
+		public int firstIndex() {
+			return indexes[head];
+		}
+
+		/**
+		 * Gets the value of the first element
+		 * @return the value of the first element
+		 */
+		public double firstValue() {
+			return values[head];
+		}
+
+		/**
+		 * Gets the value of the last element
+		 * @return the value of the last element
+		 */
+		public double lastValue() {
+			return values[(head + size - 1) & (values.length - 1)];
+		}
+
+		/**
+		 * Adds an element at the end of the deque
+		 * @param index the index of the candle
+		 * @param value the value of the candle
+		 */
+		public void addLast(int index, double value) {
+			if (size == indexes.length) {
+				grow();
+			}
+			int position = (head + size) & (indexes.length - 1);
+			indexes[position] = index;
+			values[position] = value;
+			size++;
+		}
+
+		/**
+		 * Removes the first element
+		 */
+		public void removeFirst() {
+			head = (head + 1) & (indexes.length - 1);
+			size--;
+		}
+
+		/**
+		 * Removes the last element
+		 */
+		public void removeLast() {
+			size--;
+		}
+
+		/**
+		 * Removes all the elements
+		 */
+		public void clear() {
+			head = 0;
+			size = 0;
+		}
+
+		/**
+		 * Doubles the arrays, moving the elements to their start
+		 */
+		private void grow() {
+			int[] newIndexes = new int[indexes.length * 2];
+			double[] newValues = new double[values.length * 2];
+			for (int i = 0; i < size; i++) {
+				int position = (head + i) & (indexes.length - 1);
+				newIndexes[i] = indexes[position];
+				newValues[i] = values[position];
+			}
+			indexes = newIndexes;
+			values = newValues;
+			head = 0;
+		}
+	}
+}
\ No newline at end of file
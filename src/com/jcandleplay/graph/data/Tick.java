@@ -42,6 +42,11 @@ public class Tick
 	 * The tick timestamp
 	 */
 	public long timestamp;
+
+	/**
+	 * The traded volume of this tick, 0 if unknown
+	 */
+	public double volume;
 	
 	/**
 	 * Empty constructor
@@ -61,13 +66,25 @@ public class Tick
 		this.value = value;
 	}
 
+	/**
+	 * Constructor passing fields
+	 * @param value the value of this tick
+	 * @param timestamp the timeStamp of this tick
+	 * @param volume the traded volume of this tick
+	 */
+	public Tick(double value, long timestamp, double volume)
+	{
+		this(value, timestamp);
+		this.volume = volume;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public String toString()
 	{
-		return "Value: " + value + ", Timestamp: " + timestamp; 
+		return "Value: " + value + ", Timestamp: " + timestamp + ", Volume: " + volume; 
 	}
 
 	/**
@@ -79,6 +96,7 @@ public class Tick
 		Tick tick = new Tick();
 		tick.value = value;
 		tick.timestamp = timestamp;
+		tick.volume = volume;
 		return tick;
 	}
 }
\ No newline at end of file
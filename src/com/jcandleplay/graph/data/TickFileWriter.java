@@ -0,0 +1,220 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class writes ticks to a binary tick file read by {@link MappedTickFile}
+ * The ticks are written as they are added, so a file of any size can be written
+ * without keeping the ticks on the heap. The block index and the header are written on {@link TickFileWriter#close()}.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class TickFileWriter implements TickSink, Closeable {
+	/**
+	 * The default number of ticks of a block of the index
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+	/**
+	 * The channel of the file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The buffer of the records not yet written
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(MappedTickFile.BYTE_ORDER);
+
+	/**
+	 * The number of ticks of a block of the index
+	 */
+	private final int blockSize;
+
+	/**
+	 * The first timestamp of each block
+	 */
+	private long[] blockTimestamps = new long[64];
+
+	/**
+	 * The number of ticks added
+	 */
+	private long tickCount = 0;
+
+	/**
+	 * The timestamp of the last tick added
+	 */
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	/**
+	 * The sum of the volumes of the ticks added
+	 */
+	private double volumeSum = 0;
+
+	/**
+	 * The sum of the notionals of the ticks added
+	 */
+	private double notionalSum = 0;
+
+	/**
+	 * Constructor passing fields
+	 * @param file the file to write, it is replaced if it exists
+	 * @throws IOException if the file can not be opened
+	 */
+	public TickFileWriter(File file) throws IOException {
+		this(file, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param file the file to write, it is replaced if it exists
+	 * @param blockSize the number of ticks of a block of the index
+	 * @throws IOException if the file can not be opened
+	 */
+	public TickFileWriter(File file, int blockSize) throws IOException {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.blockSize = blockSize;
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		channel.position(MappedTickFile.HEADER_SIZE);
+	}
+
+	/**
+	 * Adds a tick without volume at the end of the file
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 * @throws IOException if the records can not be written
+	 */
+	public void addTick(long timestamp, double value) throws IOException {
+		addTick(timestamp, value, 0);
+	}
+
+	/**
+	 * Adds a tick at the end of the file, with the sums of the volumes and of the notionals up to it
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 * @param volume the traded volume of the tick
+	 * @throws IOException if the records can not be written
+	 */
+	@Override
+	public void addTick(long timestamp, double value, double volume) throws IOException {
+		if (timestamp < lastTimestamp) {
+			throw new IllegalArgumentException("Tick out of time order: " + timestamp);
+		}
+
+		if (tickCount % blockSize == 0) {
+			int block = (int) (tickCount / blockSize);
+			if (block == blockTimestamps.length) {
+				blockTimestamps = Arrays.copyOf(blockTimestamps, block * 2);
+			}
+			blockTimestamps[block] = timestamp;
+		}
+
+		if (buffer.remaining() < MappedTickFile.RECORD_SIZE) {
+			flush();
+		}
+		volumeSum += volume;
+		notionalSum += value * volume;
+		buffer.putLong(timestamp);
+		buffer.putDouble(value);
+		buffer.putDouble(volumeSum);
+		buffer.putDouble(notionalSum);
+		tickCount++;
+		lastTimestamp = timestamp;
+	}
+
+	/**
+	 * Adds all the ticks of a source at the end of the file
+	 * @param tickSource the {@link TickSource} to add
+	 * @throws IOException if the records can not be written
+	 */
+	public void addTicks(TickSource tickSource) throws IOException {
+		long size = tickSource.size();
+		for (long index = 0; index < size; index++) {
+			addTick(tickSource.getTimestamp(index), tickSource.getValue(index), tickSource.getVolume(index));
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the file
+	 * @throws IOException if the records can not be written
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes the block index and the header, then closes the file
+	 * @throws IOException if the file can not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+
+			int blockCount = (int) ((tickCount + blockSize - 1) / blockSize);
+			long indexOffset = MappedTickFile.HEADER_SIZE + tickCount * MappedTickFile.RECORD_SIZE;
+			for (int block = 0; block < blockCount; block++) {
+				if (buffer.remaining() < 8) {
+					flush();
+				}
+				buffer.putLong(blockTimestamps[block]);
+			}
+			flush();
+
+			buffer.putInt(MappedTickFile.MAGIC);
+			buffer.putInt(MappedTickFile.VERSION);
+			buffer.putLong(tickCount);
+			buffer.putInt(blockSize);
+			buffer.putInt(blockCount);
+			buffer.putLong(indexOffset);
+			while (buffer.position() < MappedTickFile.HEADER_SIZE) {
+				buffer.put((byte) 0);
+			}
+			buffer.flip();
+			long position = 0;
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			buffer.clear();
+		} finally {
+			channel.close();
+		}
+	}
+}
\ No newline at end of file
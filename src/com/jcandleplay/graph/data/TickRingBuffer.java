@@ -0,0 +1,200 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a lock free ring buffer of ticks, with one producer thread and one consumer thread
+ * The producer is a live feed calling {@link TickRingBuffer#appendTick(long, double, double)},
+ * the consumer is the play thread draining the ticks in batches to a {@link TickSink}.
+ * Neither thread ever waits for the other one, the producer only publishes its position
+ * and the consumer only publishes how far it has read.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class TickRingBuffer {
+	/**
+	 * The default number of ticks the buffer holds
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 18;
+
+	/**
+	 * The timestamps of the ticks
+	 */
+	private final long[] timestamps;
+
+	/**
+	 * The values of the ticks
+	 */
+	private final double[] values;
+
+	/**
+	 * The volumes of the ticks
+	 */
+	private final double[] volumes;
+
+	/**
+	 * The mask of the position of a tick inside the buffer
+	 */
+	private final int mask;
+
+	/**
+	 * The sequence of the next tick to be read, written only by the consumer
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * The sequence of the next tick to be written, written only by the producer
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * The last head seen by the producer, so it reads the consumer position only when the buffer looks full
+	 */
+	private long headCache = 0;
+
+	/**
+	 * The timestamp of the last tick appended
+	 */
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	/**
+	 * Constructor with the default capacity
+	 */
+	public TickRingBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param capacity the number of ticks the buffer holds, rounded up to a power of two
+	 */
+	public TickRingBuffer(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.timestamps = new long[size];
+		this.values = new double[size];
+		this.volumes = new double[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Appends a tick without volume, it must be called only by the producer thread
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 * @return true if the tick was appended, false if the buffer is full
+	 */
+	public boolean appendTick(long timestamp, double value) {
+		return appendTick(timestamp, value, 0);
+	}
+
+	/**
+	 * Appends a tick, it must be called only by the producer thread
+	 * It never blocks, if the consumer is behind and the buffer is full the tick is not appended
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 * @param volume the traded volume of the tick
+	 * @return true if the tick was appended, false if the buffer is full
+	 */
+	public boolean appendTick(long timestamp, double value, double volume) {
+		if (timestamp < lastTimestamp) {
+			throw new IllegalArgumentException("Tick out of time order: " + timestamp);
+		}
+
+		long sequence = tail.get();
+		if (sequence - headCache > mask) {
+			headCache = head.get();
+			if (sequence - headCache > mask) {
+				return false;
+			}
+		}
+
+		int position = (int) (sequence & mask);
+		timestamps[position] = timestamp;
+		values[position] = value;
+		volumes[position] = volume;
+		// publishes the tick after its fields, without a full fence
+		tail.lazySet(sequence + 1);
+		lastTimestamp = timestamp;
+		return true;
+	}
+
+	/**
+	 * Moves the ticks appended so far to a sink, it must be called only by the consumer thread
+	 * @param tickSink the {@link TickSink} receiving the ticks
+	 * @param maxTicks the maximum number of ticks to move
+	 * @return the number of ticks moved
+	 * @throws IOException if the sink can not add a tick
+	 */
+	public int drainTo(TickSink tickSink, int maxTicks) throws IOException {
+		long first = head.get();
+		long last = Math.min(tail.get(), first + maxTicks);
+		long sequence = first;
+		try {
+			for (; sequence < last; sequence++) {
+				int position = (int) (sequence & mask);
+				tickSink.addTick(timestamps[position], values[position], volumes[position]);
+			}
+		} finally {
+			head.lazySet(sequence);
+		}
+		return (int) (sequence - first);
+	}
+
+	/**
+	 * Moves all the ticks appended so far to a sink, it must be called only by the consumer thread
+	 * @param tickSink the {@link TickSink} receiving the ticks
+	 * @return the number of ticks moved
+	 * @throws IOException if the sink can not add a tick
+	 */
+	public int drainTo(TickSink tickSink) throws IOException {
+		return drainTo(tickSink, getCapacity());
+	}
+
+	/**
+	 * Gets the number of ticks appended and not yet drained
+	 * @return the number of ticks waiting in the buffer
+	 */
+	public int size() {
+		long first = head.get();
+		return (int) (tail.get() - first);
+	}
+
+	/**
+	 * Gets the number of ticks the buffer holds
+	 * @return the capacity of the buffer
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+}
\ No newline at end of file
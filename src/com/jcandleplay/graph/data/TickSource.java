@@ -0,0 +1,91 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * A source of time ordered ticks read by index
+ * It is what {@link CandlePlay} and the candle aggregation consume,
+ * so the ticks can be on the heap, like {@link TickStore}, off the heap, like {@link OffHeapTickStore},
+ * or in a file, like {@link MappedTickFile}
+ *
+ * @author Felipe Santos
+ *
+ */
+public interface TickSource {
+	/**
+	 * Gets the number of ticks of this source
+	 * @return the number of ticks of this source
+	 */
+	long size();
+
+	/**
+	 * Gets the timestamp of a tick
+	 * @param index the index of the tick
+	 * @return the timestamp of the tick
+	 */
+	long getTimestamp(long index);
+
+	/**
+	 * Gets the value of a tick
+	 * @param index the index of the tick
+	 * @return the value of the tick
+	 */
+	double getValue(long index);
+
+	/**
+	 * Gets the traded volume of a tick
+	 * @param index the index of the tick
+	 * @return the volume of the tick, 0 if unknown
+	 */
+	double getVolume(long index);
+
+	/**
+	 * Gets the total volume of a range of ticks
+	 * It is answered in O(1) from the prefix sums kept by the source
+	 * @param fromIndex the index of the first tick, inclusive
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the volumes of the ticks
+	 */
+	double getVolumeSum(long fromIndex, long toIndex);
+
+	/**
+	 * Gets the total notional of a range of ticks, the sum of the value times the volume of each tick
+	 * It is answered in O(1) from the prefix sums kept by the source,
+	 * so the volume weighted average price of the range is this sum divided by {@link TickSource#getVolumeSum(long, long)}
+	 * @param fromIndex the index of the first tick, inclusive
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the notionals of the ticks
+	 */
+	double getNotionalSum(long fromIndex, long toIndex);
+
+	/**
+	 * Finds the first tick after the given time within a range of this source
+	 * @param time the time to search
+	 * @param fromIndex the first index of the range, inclusive
+	 * @param toIndex the last index of the range, exclusive
+	 * @return the index of the first tick after the time, or toIndex if there is none
+	 */
+	long indexAfter(long time, long fromIndex, long toIndex);
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class stores ticks in primitive columns, one for the timestamps, one for the values
+ * and two for the prefix sums of the volumes and of the notionals, instead of one {@link Tick} object per price.
+ * The prefix sums answer the volume and the notional of any range of ticks in O(1).
+ * The columns grow in chunks so adding ticks never copies the data already stored,
+ * and a tick costs 16 bytes of heap. The columns of the sums are only allocated from the first tick with volume,
+ * and the ticks with volume cost 32 bytes.
+ * The ticks must be added in time order.
+ *
+ * It can be read by one thread while another one adds ticks.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class TickStore implements TickSource, TickSink {
+	/**
+	 * The number of bits of the index inside a chunk
+	 */
+	private static final int CHUNK_BITS = 16;
+
+	/**
+	 * The number of ticks of each chunk
+	 */
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/**
+	 * The mask of the index inside a chunk
+	 */
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * The chunks of timestamps
+	 */
+	private long[][] timestampChunks = new long[16][];
+
+	/**
+	 * The chunks of values
+	 */
+	private double[][] valueChunks = new double[16][];
+
+	/**
+	 * The chunks of the sums of the volumes, up to each tick inclusive
+	 * A chunk is null while all of its ticks have no volume
+	 */
+	private double[][] volumeSumChunks = new double[16][];
+
+	/**
+	 * The chunks of the sums of the notionals, up to each tick inclusive
+	 * A chunk is null while all of its ticks have no volume
+	 */
+	private double[][] notionalSumChunks = new double[16][];
+
+	/**
+	 * If a tick with volume was added, from then on the chunks of the sums are allocated
+	 */
+	private boolean hasVolume = false;
+
+	/**
+	 * The number of ticks stored
+	 * It is written after the tick columns so readers always see complete ticks
+	 */
+	private volatile long size = 0;
+
+	/**
+	 * Empty constructor
+	 */
+	public TickStore() {
+	}
+
+	/**
+	 * Constructor copying a tick list
+	 * @param tickList the time ordered tick list to copy
+	 */
+	public TickStore(List<Tick> tickList) {
+		addTicks(tickList);
+	}
+
+	/**
+	 * Adds a tick without volume at the end of this store
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 */
+	public void addTick(long timestamp, double value) {
+		addTick(timestamp, value, 0);
+	}
+
+	/**
+	 * Adds a tick at the end of this store
+	 * @param timestamp the timestamp of the tick, not before the last one
+	 * @param value the value of the tick
+	 * @param volume the traded volume of the tick
+	 */
+	@Override
+	public void addTick(long timestamp, double value, double volume) {
+		long index = size;
+		if (index > 0 && timestamp < getTimestamp(index - 1)) {
+			throw new IllegalArgumentException("Tick out of time order: " + timestamp);
+		}
+
+		int chunk = (int) (index >>> CHUNK_BITS);
+		if (chunk == timestampChunks.length) {
+			long[][] newTimestampChunks = new long[chunk * 2][];
+			System.arraycopy(timestampChunks, 0, newTimestampChunks, 0, chunk);
+			double[][] newValueChunks = new double[chunk * 2][];
+			System.arraycopy(valueChunks, 0, newValueChunks, 0, chunk);
+			double[][] newVolumeSumChunks = new double[chunk * 2][];
+			System.arraycopy(volumeSumChunks, 0, newVolumeSumChunks, 0, chunk);
+			double[][] newNotionalSumChunks = new double[chunk * 2][];
+			System.arraycopy(notionalSumChunks, 0, newNotionalSumChunks, 0, chunk);
+			timestampChunks = newTimestampChunks;
+			valueChunks = newValueChunks;
+			volumeSumChunks = newVolumeSumChunks;
+			notionalSumChunks = newNotionalSumChunks;
+		}
+		if (timestampChunks[chunk] == null) {
+			timestampChunks[chunk] = new long[CHUNK_SIZE];
+			valueChunks[chunk] = new double[CHUNK_SIZE];
+		}
+		hasVolume |= volume != 0;
+		if (hasVolume && volumeSumChunks[chunk] == null) {
+			volumeSumChunks[chunk] = new double[CHUNK_SIZE];
+			notionalSumChunks[chunk] = new double[CHUNK_SIZE];
+		}
+
+		int offset = (int) (index & CHUNK_MASK);
+		timestampChunks[chunk][offset] = timestamp;
+		valueChunks[chunk][offset] = value;
+		if (hasVolume) {
+			volumeSumChunks[chunk][offset] = getVolumeSum(index) + volume;
+			notionalSumChunks[chunk][offset] = getNotionalSum(index) + value * volume;
+		}
+		size = index + 1;
+	}
+
+	/**
+	 * Adds a tick at the end of this store
+	 * @param tick the {@link Tick} to add
+	 */
+	public void addTick(Tick tick) {
+		addTick(tick.timestamp, tick.value, tick.volume);
+	}
+
+	/**
+	 * Adds a list of ticks at the end of this store
+	 * @param tickList the time ordered tick list to add
+	 */
+	public void addTicks(List<Tick> tickList) {
+		for (Tick tick : tickList) {
+			addTick(tick.timestamp, tick.value, tick.volume);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Checks if there is no tick stored
+	 * @return true if there is no tick stored
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getTimestamp(long index) {
+		return timestampChunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getValue(long index) {
+		return valueChunks[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getVolume(long index) {
+		return getVolumeSum(index + 1) - getVolumeSum(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getVolumeSum(long fromIndex, long toIndex) {
+		return getVolumeSum(toIndex) - getVolumeSum(fromIndex);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getNotionalSum(long fromIndex, long toIndex) {
+		return getNotionalSum(toIndex) - getNotionalSum(fromIndex);
+	}
+
+	/**
+	 * Gets the sum of the volumes of the ticks before an index
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the volumes of the ticks before the index
+	 */
+	private double getVolumeSum(long toIndex) {
+		double[] chunk = toIndex == 0 ? null : volumeSumChunks[(int) ((toIndex - 1) >>> CHUNK_BITS)];
+		return chunk == null ? 0 : chunk[(int) ((toIndex - 1) & CHUNK_MASK)];
+	}
+
+	/**
+	 * Gets the sum of the notionals of the ticks before an index
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return the sum of the notionals of the ticks before the index
+	 */
+	private double getNotionalSum(long toIndex) {
+		double[] chunk = toIndex == 0 ? null : notionalSumChunks[(int) ((toIndex - 1) >>> CHUNK_BITS)];
+		return chunk == null ? 0 : chunk[(int) ((toIndex - 1) & CHUNK_MASK)];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long indexAfter(long time, long fromIndex, long toIndex) {
+		return TickTimeIndex.indexAfter(this, time, fromIndex, toIndex);
+	}
+
+	/**
+	 * Creates a {@link Tick} with the data of a stored tick
+	 * @param index the index of the tick
+	 * @return a new {@link Tick}
+	 */
+	public Tick getTick(long index) {
+		return new Tick(getValue(index), getTimestamp(index), getVolume(index));
+	}
+
+	/**
+	 * Creates a list of {@link Tick} with the data of a range of stored ticks
+	 * @param fromIndex the index of the first tick, inclusive
+	 * @param toIndex the index of the last tick, exclusive
+	 * @return a new list of {@link Tick}
+	 */
+	public List<Tick> getTickList(long fromIndex, long toIndex) {
+		List<Tick> tickList = new ArrayList<Tick>((int) Math.max(toIndex - fromIndex, 0));
+		for (long index = fromIndex; index < toIndex; index++) {
+			tickList.add(getTick(index));
+		}
+		return tickList;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * This class is a time index over the time ordered ticks of a {@link TickSource}
+ * It keeps a cursor on the first tick after the play time, so the ticks before the cursor are the played ones.
+ * A seek finds the cursor with a binary search and an advance gallops from the current cursor,
+ * so moving the play time costs O(log n) of the ticks crossed instead of a scan of the whole store.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class TickTimeIndex {
+	/**
+	 * The indexed tick source
+	 */
+	private final TickSource tickSource;
+
+	/**
+	 * The index of the first tick after the current time
+	 */
+	private long cursor = 0;
+
+	/**
+	 * Constructor passing fields
+	 * @param tickSource the {@link TickSource} to index
+	 */
+	public TickTimeIndex(TickSource tickSource) {
+		this.tickSource = tickSource;
+	}
+
+	/**
+	 * Gets the indexed tick source
+	 * @return the indexed tick source
+	 */
+	public TickSource getTickSource() {
+		return tickSource;
+	}
+
+	/**
+	 * Gets the cursor, the index of the first tick after the current time
+	 * It is also the number of ticks at or before the current time
+	 * @return the cursor
+	 */
+	public long getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * Moves the cursor to the given time searching the whole source
+	 * @param time the time to move to
+	 * @return the new cursor
+	 */
+	public long seek(long time) {
+		cursor = tickSource.indexAfter(time, 0, tickSource.size());
+		return cursor;
+	}
+
+	/**
+	 * Moves the cursor to the given time searching from the current cursor
+	 * The search range doubles at each step, so the cost depends on the number of ticks crossed
+	 * @param time the time to move to
+	 * @return the new cursor
+	 */
+	public long advanceTo(long time) {
+		long size = tickSource.size();
+		if (cursor > size) {
+			cursor = size;
+		}
+
+		if (cursor < size && tickSource.getTimestamp(cursor) <= time) {
+			// forward
+			long low = cursor + 1;
+			long step = 1;
+			while (low < size && tickSource.getTimestamp(low) <= time) {
+				low += step;
+				step <<= 1;
+			}
+			cursor = tickSource.indexAfter(time, cursor + 1, Math.min(low + 1, size));
+		} else if (cursor > 0 && tickSource.getTimestamp(cursor - 1) > time) {
+			// backward
+			long high = cursor - 1;
+			long step = 1;
+			while (high > 0 && tickSource.getTimestamp(high - 1) > time) {
+				high = Math.max(high - step, 0);
+				step <<= 1;
+			}
+			cursor = tickSource.indexAfter(time, high, cursor - 1);
+		}
+		return cursor;
+	}
+
+	/**
+	 * Finds the first tick after the given time within a range of a source with a binary search
+	 * @param tickSource the {@link TickSource} to search
+	 * @param time the time to search
+	 * @param from the first index of the range, inclusive
+	 * @param to the last index of the range, exclusive
+	 * @return the index of the first tick after the time, or to if there is none
+	 */
+	public static long indexAfter(TickSource tickSource, long time, long from, long to) {
+		long low = from;
+		long high = to;
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if (tickSource.getTimestamp(middle) <= time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,194 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.data;
+
+/**
+ * The volume weighted average price of the candles of a session, restarted at the beginning of each session
+ * The price of a candle is its typical price, the average of its high, low and close.
+ * While the session has no volume, like the ticks of a source without volumes, the candles are weighted by their number of ticks.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class VolumeWeightedAveragePrice extends CandleIndicator {
+	/**
+	 * The length of a session
+	 */
+	private final long sessionMillis;
+
+	/**
+	 * The session of the closed candles
+	 */
+	private long session = Long.MIN_VALUE;
+
+	/**
+	 * The sum of the prices weighted by volume of the closed candles of the session
+	 */
+	private double priceVolumeSum = 0;
+
+	/**
+	 * The sum of the volumes of the closed candles of the session
+	 */
+	private double volumeSum = 0;
+
+	/**
+	 * The sum of the prices weighted by number of ticks of the closed candles of the session
+	 */
+	private double priceTickSum = 0;
+
+	/**
+	 * The number of ticks of the closed candles of the session
+	 */
+	private double tickSum = 0;
+
+	/**
+	 * Constructor with daily sessions
+	 */
+	public VolumeWeightedAveragePrice() {
+		this(CandleInterval.DAY_1.getMillis());
+	}
+
+	/**
+	 * Constructor passing fields
+	 * @param sessionMillis the length of a session, the sessions are aligned on the epoch
+	 */
+	public VolumeWeightedAveragePrice(long sessionMillis) {
+		super("VWAP", 1);
+		if (sessionMillis <= 0) {
+			throw new IllegalArgumentException("Invalid session: " + sessionMillis);
+		}
+		this.sessionMillis = sessionMillis;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addClosedCandle(Candle candle, double[] values) {
+		long candleSession = getSession(candle);
+		if (candleSession != session) {
+			session = candleSession;
+			resetSums();
+		}
+		double price = getTypicalPrice(candle);
+		double ticks = candle.finalTickIndex - candle.initTickIndex;
+		priceVolumeSum += price * candle.volume;
+		volumeSum += candle.volume;
+		priceTickSum += price * ticks;
+		tickSum += ticks;
+		values[0] = getAverage(priceVolumeSum, volumeSum, priceTickSum, tickSum, price);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void computeOpenCandle(Candle candle, double[] values) {
+		double price = getTypicalPrice(candle);
+		double ticks = candle.finalTickIndex - candle.initTickIndex;
+		if (getSession(candle) == session) {
+			values[0] = getAverage(priceVolumeSum + price * candle.volume, volumeSum + candle.volume,
+					priceTickSum + price * ticks, tickSum + ticks, price);
+		} else {
+			values[0] = getAverage(price * candle.volume, candle.volume, price * ticks, ticks, price);
+		}
+	}
+
+	/**
+	 * Gets the average price of a session
+	 * @param priceVolumeSum the sum of the prices weighted by volume
+	 * @param volumeSum the sum of the volumes
+	 * @param priceTickSum the sum of the prices weighted by number of ticks
+	 * @param tickSum the number of ticks
+	 * @param price the typical price of the last candle, for a session without ticks
+	 * @return the average weighted by volume, or by number of ticks if there is no volume
+	 */
+	private static double getAverage(double priceVolumeSum, double volumeSum, double priceTickSum, double tickSum, double price) {
+		if (volumeSum > 0) {
+			return priceVolumeSum / volumeSum;
+		}
+		return tickSum > 0 ? priceTickSum / tickSum : price;
+	}
+
+	/**
+	 * Gets the session of a candle
+	 * @param candle the {@link Candle}
+	 * @return the number of the session, since the epoch
+	 */
+	private long getSession(Candle candle) {
+		long session = candle.initDate / sessionMillis;
+		return candle.initDate % sessionMillis < 0 ? session - 1 : session;
+	}
+
+	/**
+	 * Gets the typical price of a candle
+	 * @param candle the {@link Candle}
+	 * @return the average of its high, low and close
+	 */
+	private static double getTypicalPrice(Candle candle) {
+		return (candle.high + candle.low + candle.close) / 3;
+	}
+
+	/**
+	 * Discards the sums of the session
+	 */
+	private void resetSums() {
+		priceVolumeSum = 0;
+		volumeSum = 0;
+		priceTickSum = 0;
+		tickSum = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void resetState() {
+		session = Long.MIN_VALUE;
+		resetSums();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Object saveState() {
+		return new Object[] {session, new double[] {priceVolumeSum, volumeSum, priceTickSum, tickSum}};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void restoreState(Object state) {
+		Object[] values = (Object[]) state;
+		session = (Long) values[0];
+		double[] sums = (double[]) values[1];
+		priceVolumeSum = sums[0];
+		volumeSum = sums[1];
+		priceTickSum = sums[2];
+		tickSum = sums[3];
+	}
+}
\ No newline at end of file
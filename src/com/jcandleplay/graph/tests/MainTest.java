@@ -25,14 +25,11 @@
 package com.jcandleplay.graph.tests;
 
 import java.awt.Container;
-import java.util.List;
-import java.util.Vector;
 
 import javax.swing.JFrame;
 
-import com.jcandleplay.graph.data.Candle;
 import com.jcandleplay.graph.data.CandlePlay;
-import com.jcandleplay.graph.data.Tick;
+import com.jcandleplay.graph.data.TickStore;
 import com.jcandleplay.graph.utils.GraphDateUtils;
 
 public class MainTest {
@@ -43,24 +40,21 @@ public class MainTest {
 		
 		CandlePlay candlePlay = new CandlePlay(pane, 1024, 768);
 		
-		// creating tick list
-		List<Tick> tickList = new Vector<>();
+		// creating tick store
+		TickStore tickStore = new TickStore();
 		long currTime = System.currentTimeMillis();
 		long timestamp = 0;
 		for (int i = 0; i < 300; i++) {
-			Candle candle = new Candle();
 			for (int j = 0; j < 60; j++) {
 				double value = 1 + Math.random() * 0.0001 * 5;
 				timestamp = currTime + i * 1000l * 60l + j * 1000l;
-				Tick tick = new Tick(value, timestamp);
-				tickList.add(tick);
-				candle.updateCandle(tick);
+				tickStore.addTick(timestamp, value);
 			}
 		}
 			
 		System.out.println(GraphDateUtils.longToStrDate(timestamp));
 		
-		candlePlay.setTickList(tickList);
+		candlePlay.setTickStore(tickStore);
 		
 		candlePlay.play();
 		
@@ -44,16 +44,21 @@ public class GraphDateUtils
 	private static TimeZone defaultTimeZone = TimeZone.getTimeZone("UTC");
 	
 	/**
-	 * A default date format
+	 * The default date format of each thread, used to parse the dates
+	 * A {@link SimpleDateFormat} is not thread safe, so the threads never share one
 	 */
-	private static DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+	private static final ThreadLocal<DateFormat> dateFormat = new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		}
+	};
 
 	/**
 	 * Constructor
 	 */
 	public GraphDateUtils() 
 	{
-		dateFormat.setTimeZone(defaultTimeZone);
 	}
     
 	/**
@@ -97,25 +102,23 @@ public class GraphDateUtils
 	 * Converts a long date to a formated string
 	 * @param date the long date to convert
      * @param timeZone the {@link TimeZone} to use when converting the data
-     * @return a formated date string using {@link GraphDateUtils#dateFormat}
+     * @return a formated date string with the format of {@link GraphDateUtils#dateFormat}
+     * It is thread safe, the date is formatted by the {@link LabelFormatter} of the current thread
      */
     public static String longToStrDate(long date, TimeZone timeZone)
     {
-    	Calendar cal = Calendar.getInstance(timeZone);
-    	cal.setTimeInMillis(date);
-    	Date dt = cal.getTime();
-    	dateFormat.setTimeZone(timeZone);
-    	return dateFormat.format(dt);
+    	return LabelFormatter.getInstance().formatDate(date, timeZone);
     }
 
     /**
-     * Converts a {@link Date} to a String one passing by {@link GraphDateUtils#dateFormat}
+     * Converts a {@link Date} to a String one with the format of {@link GraphDateUtils#dateFormat}
+     * It is thread safe, the date is formatted by the {@link LabelFormatter} of the current thread
      * @param currDate a {@link Date} to be converted as string
      * @return a {@link Date} to be converted as string
      */
 	public static String dateToStrDate(Date currDate)
 	{
-		return dateFormat.format(currDate);
+		return LabelFormatter.getInstance().formatDate(currDate.getTime(), getDefaultTimeZone());
 	}
 	
 	/**
@@ -134,11 +137,13 @@ public class GraphDateUtils
 	 * @param stringDateTime a formated string date format: {@link GraphDateUtils#dateFormat} 
 	 * @param stringDateTime
 	 * @return a long date
+	 * It is thread safe, the date is parsed by the date format of the current thread
 	 */
 	public static long getDateTimeWithString(TimeZone timeZone, String stringDateTime)
 	{
 	    try
 	    {
+	    	DateFormat dateFormat = GraphDateUtils.dateFormat.get();
 	    	dateFormat.setTimeZone(timeZone);
 	    	Date parse = dateFormat.parse(stringDateTime);
 			return parse.getTime();
@@ -0,0 +1,251 @@
+/*
+ * This source file is part of jCandlePlay
+ * 
+ * jCandlePlay is free software: you can redistribute it
+ * and/or modify it under the terms of the MIT License.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.jcandleplay.graph.utils;
+
+import java.util.TimeZone;
+
+/**
+ * This class formats the labels of the graph into reusable char buffers, without creating strings
+ * The values have a fixed number of decimals and the dates have the format yyyy-MM-dd HH:mm:ss.
+ * The date and time of a minute are computed once and kept, so formatting the dates of a frame
+ * only writes the seconds most of the time.
+ *
+ * An instance is not thread safe, {@link LabelFormatter#getInstance()} gives one per thread.
+ *
+ * @author Felipe Santos
+ *
+ */
+public class LabelFormatter {
+	/**
+	 * The length of a formatted date
+	 */
+	public static final int DATE_LENGTH = 19;
+
+	/**
+	 * The maximum number of decimals of a formatted value
+	 */
+	public static final int MAX_DECIMALS = 9;
+
+	/**
+	 * The powers of ten up to {@link LabelFormatter#MAX_DECIMALS}
+	 */
+	private static final long[] POWERS_OF_TEN = {
+		1l, 10l, 100l, 1000l, 10000l, 100000l, 1000000l, 10000000l, 100000000l, 1000000000l
+	};
+
+	/**
+	 * The largest scaled value formatted exactly, the larger ones use {@link Double#toString(double)}
+	 */
+	private static final double MAX_SCALED_VALUE = 1e15;
+
+	/**
+	 * The number of milliseconds of a minute
+	 */
+	private static final long MINUTE_MILLIS = 60 * 1000;
+
+	/**
+	 * The formatter of each thread
+	 */
+	private static final ThreadLocal<LabelFormatter> threadLabelFormatter = new ThreadLocal<LabelFormatter>() {
+		@Override
+		protected LabelFormatter initialValue() {
+			return new LabelFormatter();
+		}
+	};
+
+	/**
+	 * The chars of the date and time of {@link LabelFormatter#cachedMinute}, up to the minutes and the colon
+	 */
+	private final char[] minuteChars = new char[DATE_LENGTH - 2];
+
+	/**
+	 * The local minute of {@link LabelFormatter#minuteChars}, since the epoch
+	 */
+	private long cachedMinute = Long.MIN_VALUE;
+
+	/**
+	 * The buffer of the formatted strings
+	 */
+	private final char[] stringChars = new char[32];
+
+	/**
+	 * Gets the formatter of the current thread
+	 * @return the {@link LabelFormatter} of the current thread
+	 */
+	public static LabelFormatter getInstance() {
+		return threadLabelFormatter.get();
+	}
+
+	/**
+	 * Formats a value with a fixed number of decimals, rounding half up
+	 * @param value the value to format
+	 * @param decimals the number of decimals, up to {@link LabelFormatter#MAX_DECIMALS}
+	 * @param buffer the buffer to write the chars from its start, with room for 32 chars
+	 * @return the number of chars written
+	 */
+	public int formatValue(double value, int decimals, char[] buffer) {
+		long power = POWERS_OF_TEN[decimals];
+		double absValue = Math.abs(value);
+		if (!(absValue * power < MAX_SCALED_VALUE)) {
+			// too large, infinite or not a number
+			String string = Double.toString(value);
+			string.getChars(0, string.length(), buffer, 0);
+			return string.length();
+		}
+
+		// the integer part is split first, its fraction is exact so only the decimals are rounded
+		long integerPart = (long) absValue;
+		long decimalPart = Math.round((absValue - integerPart) * power);
+		if (decimalPart == power) {
+			integerPart++;
+			decimalPart = 0;
+		}
+		int length = 0;
+		if (value < 0 && (integerPart != 0 || decimalPart != 0)) {
+			buffer[length++] = '-';
+		}
+		length = writeDigits(integerPart, 1, buffer, length);
+		if (decimals > 0) {
+			buffer[length++] = '.';
+			length = writeDigits(decimalPart, decimals, buffer, length);
+		}
+		return length;
+	}
+
+	/**
+	 * Formats a date in the default time zone of {@link GraphDateUtils}
+	 * @param time the date to format
+	 * @param buffer the buffer to write the chars from its start, with room for {@link LabelFormatter#DATE_LENGTH} chars
+	 * @return the number of chars written
+	 */
+	public int formatDate(long time, char[] buffer) {
+		return formatDate(time, GraphDateUtils.getDefaultTimeZone(), buffer);
+	}
+
+	/**
+	 * Formats a date as yyyy-MM-dd HH:mm:ss
+	 * @param time the date to format
+	 * @param timeZone the {@link TimeZone} of the date
+	 * @param buffer the buffer to write the chars from its start, with room for {@link LabelFormatter#DATE_LENGTH} chars
+	 * @return the number of chars written
+	 */
+	public int formatDate(long time, TimeZone timeZone, char[] buffer) {
+		long localTime = time + timeZone.getOffset(time);
+		long minute = floorDiv(localTime, MINUTE_MILLIS);
+		if (minute != cachedMinute) {
+			formatMinute(minute);
+			cachedMinute = minute;
+		}
+		System.arraycopy(minuteChars, 0, buffer, 0, minuteChars.length);
+		int second = (int) (floorMod(localTime, MINUTE_MILLIS) / 1000);
+		return writeDigits(second, 2, buffer, minuteChars.length);
+	}
+
+	/**
+	 * Formats a date as a string yyyy-MM-dd HH:mm:ss
+	 * @param time the date to format
+	 * @param timeZone the {@link TimeZone} of the date
+	 * @return the formatted date
+	 */
+	public String formatDate(long time, TimeZone timeZone) {
+		int length = formatDate(time, timeZone, stringChars);
+		return new String(stringChars, 0, length);
+	}
+
+	/**
+	 * Writes the date and time of a local minute into {@link LabelFormatter#minuteChars}
+	 * The civil date is computed from the days since the epoch, in the proleptic Gregorian calendar
+	 * @param minute the local minute since the epoch
+	 */
+	private void formatMinute(long minute) {
+		long days = floorDiv(minute, 24 * 60);
+		int minuteOfDay = (int) floorMod(minute, 24 * 60);
+
+		// days to civil date, counting eras of 400 years from 0000-03-01
+		long shiftedDays = days + 719468;
+		long era = floorDiv(shiftedDays, 146097);
+		int dayOfEra = (int) (shiftedDays - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int monthIndex = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+		int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		int length = writeDigits(year, 4, minuteChars, 0);
+		minuteChars[length++] = '-';
+		length = writeDigits(month, 2, minuteChars, length);
+		minuteChars[length++] = '-';
+		length = writeDigits(day, 2, minuteChars, length);
+		minuteChars[length++] = ' ';
+		length = writeDigits(minuteOfDay / 60, 2, minuteChars, length);
+		minuteChars[length++] = ':';
+		length = writeDigits(minuteOfDay % 60, 2, minuteChars, length);
+		minuteChars[length++] = ':';
+	}
+
+	/**
+	 * Divides rounding towards negative infinity
+	 * @param dividend the dividend
+	 * @param divisor the positive divisor
+	 * @return the largest quotient not greater than the exact one
+	 */
+	private static long floorDiv(long dividend, long divisor) {
+		long quotient = dividend / divisor;
+		return dividend % divisor < 0 ? quotient - 1 : quotient;
+	}
+
+	/**
+	 * Gets the remainder of {@link LabelFormatter#floorDiv(long, long)}
+	 * @param dividend the dividend
+	 * @param divisor the positive divisor
+	 * @return the remainder, not negative
+	 */
+	private static long floorMod(long dividend, long divisor) {
+		long remainder = dividend % divisor;
+		return remainder < 0 ? remainder + divisor : remainder;
+	}
+
+	/**
+	 * Writes the digits of a positive number, padded with zeros
+	 * @param number the number to write
+	 * @param minDigits the minimum number of digits
+	 * @param buffer the buffer to write the digits
+	 * @param offset the position of the first digit
+	 * @return the position after the last digit
+	 */
+	private static int writeDigits(long number, int minDigits, char[] buffer, int offset) {
+		int digits = 1;
+		for (long rest = number / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		digits = Math.max(digits, minDigits);
+		for (int position = offset + digits - 1; position >= offset; position--) {
+			buffer[position] = (char) ('0' + number % 10);
+			number /= 10;
+		}
+		return offset + digits;
+	}
+}
\ No newline at end of file